@@ -28,6 +28,78 @@ object BarcodeDistanceCalculator {
 
   }
 
+
+  /**
+   * Checks whether the distance between two barcodes is below a threshold.
+   * For the Hamming distance, the comparison stops as soon as the threshold is reached.
+   * For the Levenshtein distance, cheap bounds are checked before the distance is calculated:
+   * the length difference and the composition bound (see getCompositionBound) are lower bounds,
+   * and for barcodes of the same length, the Hamming distance is an upper bound.
+   * Only if these bounds do not decide the comparison, the distance is calculated up to the threshold
+   * @param barcode1 the first barcode
+   * @param barcode2 the second barcode
+   * @param threshold the distance threshold
+   * @return true if the distance between barcode 1 and 2 is smaller than the threshold
+   */
+  def isCloserThan(barcode1 : String, barcode2 : String, threshold : Int) : Boolean = {
+    if (distanceType == 0) {
+      var mismatches = 0
+      var i = 0
+      while (i < barcode1.length && mismatches < threshold) {
+        if (barcode1.charAt(i) != barcode2.charAt(i))
+          mismatches += 1
+        i += 1
+      }
+      mismatches < threshold
+    } else if (math.abs(barcode1.length - barcode2.length) >= threshold ||
+      getCompositionBound(barcode1, barcode2) >= threshold) {
+      false
+    } else if (barcode1.length == barcode2.length && hammingDist(barcode1, barcode2) < threshold) {
+      true
+    } else {
+      levenshtein(barcode1, barcode2, threshold) < threshold
+    }
+  }
+
+  /**
+   * Calculates a lower bound for the Levenshtein distance from the nucleotide counts of two barcodes.
+   * Each edit operation reduces the surplus of nucleotides of the first barcode over the second
+   * barcode by at most one, and likewise the surplus of the second barcode, so that
+   * the larger of the two surpluses is a lower bound
+   * @param barcode1 the first barcode
+   * @param barcode2 the second barcode
+   * @return the lower bound, which is at least the length difference of the barcodes
+   */
+  def getCompositionBound(barcode1 : String, barcode2 : String) : Int = {
+    // the count differences of A, C, G, T and other characters
+    val diff = new Array[Int](5)
+    for (i <- 0 until barcode1.length)
+      diff(nucleotideIndex(barcode1.charAt(i))) += 1
+    for (i <- 0 until barcode2.length)
+      diff(nucleotideIndex(barcode2.charAt(i))) -= 1
+    var surplus1 = 0
+    var surplus2 = 0
+    for (d <- diff) {
+      if (d > 0)
+        surplus1 += d
+      else
+        surplus2 -= d
+    }
+    math.max(surplus1, surplus2)
+  }
+
+  /**
+   * Maps a nucleotide to its index in count arrays
+   * @param nucleotide the nucleotide
+   * @return 0 to 3 for A, C, G and T, and 4 for other characters
+   */
+  private def nucleotideIndex(nucleotide : Char) : Int = nucleotide match {
+    case 'A' => 0
+    case 'C' => 1
+    case 'G' => 2
+    case 'T' => 3
+    case _ => 4
+  }
   
   /**
    * Calculates a matrix of pairwise distances between any two barcodes in the provided
@@ -36,19 +108,109 @@ object BarcodeDistanceCalculator {
    * @return The distance matrix consisting of one array of distances for each barcode
    */
   def getBarcodeDists(barcodes : Array[String]): Array[Array[Int]] = {
-    val d = ParArray.tabulate(barcodes.length)((i1: Int) => {
-      Array.tabulate(barcodes.length)((i2: Int) => {
-        if (i1 == i2)
+    val maxLength = getMaxLength(barcodes)
+    val d = ParArray.tabulate(barcodes.length)((i1: Int) => getDistRow(barcodes, i1, maxLength)).toArray
+    d
+  }
+
+  /**
+   * Determines the length of the longest barcode, which is the size of the
+   * buffers for the Levenshtein distance (see getDistRow)
+   * @param	barcodes The barcodes as an array of strings
+   * @return The maximum length, or 0 for an empty array
+   */
+  def getMaxLength(barcodes : Array[String]): Int = {
+    var maxLength = 0
+    for (barcode <- barcodes)
+      maxLength = math.max(maxLength, barcode.length)
+    maxLength
+  }
+
+  /**
+   * Calculates the distances of one barcode to all barcodes in the provided barcode set
+   * (i.e. one row of the distance matrix). In contrast to dist, the strings are compared
+   * directly without converting them to sequences. The Levenshtein distances of barcodes
+   * with up to 64 nucleotides are calculated bit-parallel (see Levenshtein)
+   * @param	barcodes The barcodes as an array of strings
+   * @param	i The index of the barcode
+   * @param	maxLength The length of the longest barcode (see getMaxLength)
+   * @return The distances, where the distance of the barcode to itself is set to the maximum value
+   */
+  def getDistRow(barcodes : Array[String], i : Int, maxLength : Int): Array[Int] = {
+    val barcode = barcodes(i)
+    val row = new Array[Int](barcodes.length)
+    // buffers for the Levenshtein distance, which are reused for all barcodes
+    val previous = new Array[Int](maxLength + 1)
+    val current = new Array[Int](maxLength + 1)
+    val masks = if (distanceType == 0) null else Levenshtein.getPatternMasks(barcode)
+    var j = 0
+    while (j < barcodes.length) {
+      row(j) =
+        if (j == i)
           // set diagonal to maximum value
           Int.MaxValue
+        else if (masks != null)
+          Levenshtein.levenshtein(masks, barcode.length, barcodes(j))
         else
-          // count number of different nucleotides
-          dist(barcodes(i1), barcodes(i2))
-      })
-    }).toArray
-    d
+          stringDist(barcode, barcodes(j), previous, current)
+      j += 1
+    }
+    row
+  }
+
+  /**
+   * Calculates the pairwise distance between two barcodes like dist,
+   * but compares the strings directly without converting them to sequences
+   * @param barcode1 the first barcode
+   * @param barcode2 the second barcode
+   * @return the pairwise distance between barcode 1 and 2
+   */
+  def stringDist(barcode1 : String, barcode2 : String) : Int =
+    if (distanceType == 0) hammingDist(barcode1, barcode2) else levenshtein(barcode1, barcode2)
+
+  /**
+   * Calculates the pairwise distance between two barcodes like stringDist,
+   * but uses buffers supplied by the caller for the Levenshtein distance
+   * @param barcode1 the first barcode
+   * @param barcode2 the second barcode
+   * @param previous buffer of at least barcode2.length + 1 entries
+   * @param current buffer of at least barcode2.length + 1 entries
+   * @return the pairwise distance between barcode 1 and 2
+   */
+  def stringDist(barcode1 : String, barcode2 : String, previous : Array[Int], current : Array[Int]) : Int =
+    if (distanceType == 0) hammingDist(barcode1, barcode2) else levenshtein(barcode1, barcode2, previous, current)
+
+  /**
+   * Counts the positions at which two barcodes differ
+   * @param barcode1 the first barcode
+   * @param barcode2 the second barcode
+   * @return the Hamming distance between barcode 1 and 2 (over the length of the shorter barcode)
+   */
+  def hammingDist(barcode1 : String, barcode2 : String) : Int = {
+    val length = math.min(barcode1.length, barcode2.length)
+    var mismatches = 0
+    var i = 0
+    while (i < length) {
+      if (barcode1.charAt(i) != barcode2.charAt(i))
+        mismatches += 1
+      i += 1
+    }
+    mismatches
   }
   
+  /**
+   * Calculates a matrix of distances between the barcodes of two barcode sets
+   * @param	barcodes The barcodes that correspond to the rows of the matrix
+   * @param	others The barcodes that correspond to the columns of the matrix
+   * @return The distance matrix consisting of one array of distances to the other
+   * barcodes for each barcode
+   */
+  def getCrossDists(barcodes : Array[String], others : Array[String]): Array[Array[Int]] = {
+    ParArray.tabulate(barcodes.length)((i1: Int) => {
+      Array.tabulate(others.length)((i2: Int) => stringDist(barcodes(i1), others(i2)))
+    }).toArray
+  }
+
   /**
    * Calculates a matrix of pairwise distances between any two barcodes in the provided
    * barcode set
@@ -147,6 +309,86 @@ object BarcodeDistanceCalculator {
     (distTable, minDists)
   }
 
+  /**
+   * Calculates a compact matrix of distance tables
+   * and the minimum distance vector. In contrast to getDistanceTable,
+   * distances are only counted individually below a cap, and all
+   * larger distances share one overflow entry. The tables of all barcodes
+   * are stored one after another in a flat array of 16-bit counts,
+   * which suffices for sets of up to 65535 barcodes
+   * (BarcodeSelector.maxNumBarcodes, which the selector enforces).
+   * @param dist Stored distance matrix for the barcode set
+   * @param cap The number of distances that are counted individually
+   * @param indices the indices of the included barcodes
+   * @param base Optional tables and minimum distances (in the same format as the result)
+   * of further barcodes that are counted in addition to the included barcodes, or null
+   * @return A flat array of cap + 1 distance counts for each barcode
+   * and an integer vector containing the minimum distances
+   */
+  def getCappedDistanceTable(dist: Array[Array[Int]], cap: Int, indices: Array[Int],
+                             base: (Array[Char], Array[Int]) = null) :
+    (Array[Char], Array[Int]) = {
+
+    val width = cap + 1
+    // initialize minimum distances with infinity and counts with 0,
+    // or with the base tables
+    val minDists = if (base == null) Array.fill(dist.length)(Integer.MAX_VALUE) else base._2.clone()
+    val distTable = if (base == null) new Array[Char](dist.length * width) else base._1.clone()
+    for (i <- dist.indices) {
+      val row = dist(i)
+      for (j <- indices) {
+        // the diagonal is infinite, so a barcode is not counted for itself
+        val d = row(j)
+        if (d != Integer.MAX_VALUE) {
+          val k = i * width + math.min(d, cap)
+          distTable(k) = (distTable(k) + 1).toChar
+          if (d < minDists(i))
+          // this is the new minimum distance for barcode i
+            minDists(i) = d
+        }
+      }
+    }
+    (distTable, minDists)
+  }
+
+  /**
+   * Calculates a compact matrix of distance tables and the minimum distance vector
+   * like getCappedDistanceTable for a symmetric distance matrix. Only the rows of the
+   * included barcodes are accessed, which avoids calculating the other rows
+   * of matrices that calculate their rows on demand (see LazyDistanceMatrix)
+   * @param dist Distance matrix of the barcode set
+   * @param cap The number of distances that are counted individually
+   * @param indices the indices of the included barcodes
+   * @param base Optional tables and minimum distances (in the same format as the result)
+   * of further barcodes that are counted in addition to the included barcodes, or null
+   * @return A flat array of cap + 1 distance counts for each barcode
+   * and an integer vector containing the minimum distances
+   */
+  def getCappedDistanceTable(dist: DistanceMatrix, cap: Int, indices: Array[Int],
+                             base: (Array[Char], Array[Int])) : (Array[Char], Array[Int]) = {
+
+    val n = dist.size
+    val width = cap + 1
+    val minDists = if (base == null) Array.fill(n)(Integer.MAX_VALUE) else base._2.clone()
+    val distTable = if (base == null) new Array[Char](n * width) else base._1.clone()
+    for (j <- indices) {
+      // by symmetry, the row of an included barcode holds its distances to all barcodes
+      val row = dist(j)
+      var i = 0
+      while (i < n) {
+        val d = row(i)
+        if (d != Integer.MAX_VALUE) {
+          val k = i * width + math.min(d, cap)
+          distTable(k) = (distTable(k) + 1).toChar
+          if (d < minDists(i))
+            minDists(i) = d
+        }
+        i += 1
+      }
+    }
+    (distTable, minDists)
+  }
+
   /**
   * Determines the minimum distance of the given barcodes
   * @param barcodes the set from which the minimum distance is calculated
@@ -0,0 +1,81 @@
+package main.code
+package algorithm
+
+/**
+ * A pool of imported barcode candidates without duplicates. Duplicate barcodes
+ * would occupy rows of the distance matrix without being selectable together,
+ * so only their first occurrence is kept. Selections are exported as barcode strings,
+ * which are the same for all occurrences, so that they need no mapping to the imported pool.
+ * @param original	The imported barcodes, which may contain duplicates
+ */
+class BarcodePool(val original: Array[String]) {
+
+  // the unique barcodes in the order of their first occurrence
+  val barcodes: Array[String] = {
+    val known = new java.util.HashSet[String](original.length * 2)
+    original.filter(known.add)
+  }
+
+  /**
+   * Gets the number of removed duplicates
+   * @return The number of original barcodes minus the number of unique barcodes
+   */
+  def numDuplicates: Int = original.length - barcodes.length
+}
+
+/**
+ * Static methods of the BarcodePool class
+ */
+object BarcodePool {
+
+  /**
+   * Determines the positions at which not all barcodes have the same nucleotide.
+   * Constant positions (e.g. shared adapters or fixed anchors) do not contribute to
+   * the Hamming distance. For the Levenshtein distance, only constant positions at
+   * the beginning and the end are omitted, as a common prefix or suffix does not
+   * change the distance, whereas omitting inner positions may allow different alignments
+   * @param barcodes	The barcodes
+   * @return The ascending variable positions, or null if no position can be omitted
+   * (including barcodes of different lengths)
+   */
+  def getVariablePositions(barcodes: Array[String]): Array[Int] = {
+    if (barcodes.isEmpty)
+      return null
+    val first = barcodes(0)
+    if (barcodes.exists(_.length != first.length))
+      return null
+
+    val constant = Array.fill(first.length)(true)
+    for (barcode <- barcodes; i <- constant.indices if constant(i) && barcode.charAt(i) != first.charAt(i))
+      constant(i) = false
+
+    val positions =
+      if (BarcodeDistanceCalculator.distanceType == 0)
+        constant.indices.filter(!constant(_)).toArray
+      else {
+        val start = constant.indexWhere(!_)
+        if (start < 0)
+          new Array[Int](0)
+        else
+          (start to constant.lastIndexWhere(!_)).toArray
+      }
+    if (positions.length == first.length) null else positions
+  }
+
+  /**
+   * Removes the positions at which all barcodes agree, which does not change the distances
+   * between the barcodes, but reduces the effort of calculating them
+   * @param barcodes	The barcodes
+   * @param others	Further barcodes whose distances to the barcodes are required (e.g. locked barcodes)
+   * @return A tuple comprising the barcodes and the further barcodes without the constant positions
+   */
+  def stripConstantPositions(barcodes: Array[String], others: Array[String]): (Array[String], Array[String]) = {
+    val positions = getVariablePositions(barcodes ++ others)
+    if (positions == null)
+      (barcodes, others)
+    else {
+      def strip(barcode: String): String = new String(positions.map(barcode.charAt))
+      (barcodes.map(strip), others.map(strip))
+    }
+  }
+}
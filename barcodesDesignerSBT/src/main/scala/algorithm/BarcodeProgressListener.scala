@@ -16,4 +16,28 @@ trait BarcodeProgressListener {
    * false if it is cancelled
    */
   def progress(percentage: Double, message: String): Boolean
-}
\ No newline at end of file
+}
+
+/**
+ * Static methods for progress listeners
+ */
+object BarcodeProgressListener {
+
+  /**
+   * Forwards a progress to a listener that may be shared by concurrent runs.
+   * Calls are serialized, as listeners are not required to be thread-safe.
+   * @param listener	The listener, or null if no progress should be reported
+   * @param percentage	The percentage of completion
+   * @param message	The message detailing the progress
+   * @return true if the progress should continue,
+   * false if it is cancelled
+   */
+  def report(listener: BarcodeProgressListener, percentage: Double, message: String): Boolean = {
+    if (listener == null)
+      true
+    else
+      listener.synchronized {
+        listener.progress(percentage, message)
+      }
+  }
+}
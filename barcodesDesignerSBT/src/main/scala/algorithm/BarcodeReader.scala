@@ -14,21 +14,79 @@ object BarcodeReader {
    * @param file The name of the text file
    * @return The barcodes as a string array
    */
-  def readBarcodes(file: String) :Array[String] = {
+  def readBarcodes(file: String) :Array[String] = readBarcodes(file, false)
+
+  /**
+   * Reads barcodes from a text file with one barcode in each line
+   * @param file The name of the text file
+   * @param variableLength Specifies that the barcodes may have different lengths
+   * (which is only meaningful for the Levenshtein distance)
+   * @return The barcodes as a string array
+   */
+  def readBarcodes(file: String, variableLength: Boolean) :Array[String] = {
     val source = scala.io.Source.fromFile(file)
     val barcodes = source.getLines().toArray.map(_.toUpperCase)
-    val length = if (barcodes.length > 0) barcodes(0).length() else 0
-
-    for (line <- barcodes) {
-      if (line.length() != length)
-        throw new Exception("All barcodes must have the same length!")
-      
-      if (!line.matches("[ACGT]*"))
-        throw new Exception("File contains non-nucleotide characters!")      
-    }
+    val length = if (variableLength) -1 else if (barcodes.length > 0) barcodes(0).length() else 0
+
+    for (line <- barcodes)
+      checkBarcode(line, length)
     source.close()
     barcodes
   }
+
+  /**
+   * Reads barcodes from a text file with one barcode in each line
+   * one at a time, so that the file does not have to fit into memory.
+   * The file is closed when the consumer returns or throws an exception
+   * @param file The name of the text file
+   * @param consumer A function that consumes the barcodes (the iterator must not be used afterwards)
+   * @return The result of the consumer
+   */
+  def readBarcodesLazily[T](file: String)(consumer: Iterator[String] => T): T =
+    readBarcodesLazily(file, false)(consumer)
+
+  /**
+   * Reads barcodes from a text file with one barcode in each line
+   * one at a time, so that the file does not have to fit into memory.
+   * The file is closed when the consumer returns or throws an exception
+   * (e.g. for a malformed barcode)
+   * @param file The name of the text file
+   * @param variableLength Specifies that the barcodes may have different lengths
+   * (which is only meaningful for the Levenshtein distance)
+   * @param consumer A function that consumes the barcodes (the iterator must not be used afterwards)
+   * @return The result of the consumer
+   */
+  def readBarcodesLazily[T](file: String, variableLength: Boolean)(consumer: Iterator[String] => T): T = {
+    val source = scala.io.Source.fromFile(file)
+    try {
+      var barcodeLength = -1
+      consumer(source.getLines().map(l => {
+        val line = l.toUpperCase
+        if (barcodeLength < 0 && !variableLength)
+          barcodeLength = line.length()
+        checkBarcode(line, barcodeLength)
+        line
+      }))
+    } finally {
+      source.close()
+    }
+  }
+
+  /**
+   * Verifies that a barcode has the expected length and consists of nucleotides
+   * @param line The barcode
+   * @param length The length of all barcodes in the file, or -1 if the lengths may differ
+   */
+  private def checkBarcode(line: String, length: Int): Unit = {
+    if (length >= 0 && line.length() != length)
+      throw new Exception("All barcodes must have the same length!")
+
+    if (line.isEmpty && length < 0)
+      throw new Exception("File contains empty barcodes!")
+
+    if (!line.matches("[ACGT]*"))
+      throw new Exception("File contains non-nucleotide characters!")
+  }
   
   /**
    * Writes a set of barcodes to a file with one barcode in each line
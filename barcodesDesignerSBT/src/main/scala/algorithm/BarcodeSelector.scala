@@ -6,9 +6,11 @@ import algorithm.InitType._
 import org.json4s._
 import org.json4s.native.JsonMethods._
 
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+
 import scala.collection.mutable.ArrayBuffer
 import scala.collection.parallel.immutable.ParSeq
-import scala.collection.{immutable, mutable}
+import scala.collection.parallel.mutable.ParArray
 import scala.io.Source
 import scala.reflect.ClassTag
 import scala.util.Random
@@ -33,6 +35,11 @@ object InitType {
    * Backward selection
    */
   val INIT_BACKWARD = new InitType("BACKWARD", 2)
+
+  /**
+   * Sets of a previous result file, complemented by a forward selection
+   */
+  val INIT_FROM_FILE = new InitType("FROM_FILE", 3)
 }
 
 /**
@@ -86,53 +93,218 @@ object BarcodeSelectionResult {
 
 /**
  * A barcode set class that stores subsets of an initial barcode set
- * represented as a logical vector. Objects of this class are used
+ * represented as a bit set (see Bitset). Objects of this class are used
  * as individuals in the barcode selection algorithm 
  * @param parent The parent barcode selector for the individual
- * @param set The set as a Boolean vector, where a true value means
+ * @param bits The set as a bit set, where a set bit means
  * 						that the corresponding barcode is included
+ * @param template An individual with the same set whose distance tables are copied,
+ *            or null if the tables should be calculated from scratch
  */
-class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extends MOOIndividual[BarcodeSubset] {
+class BarcodeSubset private[algorithm] (val parent: BarcodeSelector, var bits: Array[Long], template: BarcodeSubset)
+  extends MOOIndividual[BarcodeSubset] {
 
   var fitness: (Int, Double, Int) = (0, 0, 0)
 
+  /**
+   * Auxiliary constructor that calculates all distance tables
+   * @param parent The parent barcode selector for the individual
+   * @param bits The set as a bit set, where a set bit means
+   * 						that the corresponding barcode is included
+   */
+  def this(parent: BarcodeSelector, bits: Array[Long]) = {
+    this(parent, bits, null)
+  }
+
   /**
    * Auxiliary constructor that allows for a calculation of the fitness
    * @param parent The parent barcode selector for the individual
-   * @param set The set as a Boolean vector, where a true value means
+   * @param bits The set as a bit set, where a set bit means
    * 						that the corresponding barcode is included
    * @param updateFitness If set to true, the fitness of the individual is calculated
    */
-  def this(parent: BarcodeSelector, set: Array[Boolean], updateFitness: Boolean) = {
-    this(parent, set)
+  def this(parent: BarcodeSelector, bits: Array[Long], updateFitness: Boolean) = {
+    this(parent, bits)
     if (updateFitness)
       this.updateFitness()
   }
 
+  /**
+   * Auxiliary constructor for a set given as a logical vector
+   * @param parent The parent barcode selector for the individual
+   * @param set The set as a Boolean vector, where a true value means
+   * 						that the corresponding barcode is included
+   * @param updateFitness If set to true, the fitness of the individual is calculated
+   */
+  def this(parent: BarcodeSelector, set: Array[Boolean], updateFitness: Boolean) = {
+    this(parent, Bitset.fromBooleans(set), updateFitness)
+  }
+
   /**
    * Auxiliary constructor that creates a copy of another individual
    * @param other The individual to copy
    */
   def this(other: BarcodeSubset) = {
-    this(other.parent, other.set.clone())
+    this(other.parent, other.bits.clone(), other)
     this.fitness = other.fitness
 
   }
 
   /**
-   * A sorted set containing the integer indices
-   * that correspond to the Boolean index vector
+   * The number of barcodes in the set
    */
-  private[algorithm] var indices: mutable.SortedSet[Int] = collection.mutable.SortedSet[Int]() ++ BarcodeSelector.setToIndex(set)
+  private[algorithm] var size: Int = if (template != null) template.size else Bitset.cardinality(bits)
+
+  /**
+   * The number of distances that are counted individually in the distance table.
+   * Larger distances are only counted in a common overflow entry, which is empty
+   * unless the barcodes are longer than BarcodeSelector.distanceTableCap.
+   */
+  private val distCap = parent.distCap
+
+  // the number of distance table entries per barcode
+  private val distWidth = distCap + 1
 
   /**
    * minDists: A vector storing the minimum distances of all barcodes to
    * the barcodes in the set
-   * distTable: A vector that comprises a contingency table of distances
-   * to the barcodes in the set for all barcodes
+   * distTable: A flat array that comprises a contingency table of distances
+   * to the barcodes in the set for all barcodes, where the table of barcode i
+   * starts at i * distWidth
+   */
+  private[algorithm] var (distTable: Array[Char], minDists: Array[Int]) =
+    if (template != null)
+      (template.distTable.clone(), template.minDists.clone())
+    else
+      BarcodeDistanceCalculator.getCappedDistanceTable(parent.dist, distCap, Bitset.toIndices(bits), parent.lockedTable)
+
+  /**
+   * The Zobrist hash of the set, i.e. the XOR of the
+   * random keys of all included barcodes
+   */
+  private[algorithm] var hash: Long =
+    if (template != null)
+      template.hash
+    else
+      Bitset.toIndices(bits).foldLeft(0L)((h, i) => h ^ parent.zobristKeys(i))
+
+  /**
+   * The color balance sums of the set for each barcode position
+   */
+  private[algorithm] val balance: Array[Int] =
+    if (template != null) template.balance.clone() else parent.getColorBalance(bits)
+
+  /**
+   * An optional queue of barcodes keyed by their minimum distances,
+   * which is kept up to date whenever a minimum distance changes
+   */
+  private[algorithm] var queue: BucketQueue = null
+
+  /**
+   * Adds the color codes of a barcode to the color balance of the set,
+   * or subtracts them
+   * @param index The index of the barcode
+   * @param sign 1 to add the barcode, -1 to remove it
+   */
+  private def updateBalance(index: Int, sign: Int): Unit = {
+    val codes = parent.colorCodes
+    val offset = index * balance.length
+    for (j <- balance.indices)
+      balance(j) += sign * codes(offset + j)
+  }
+
+  /**
+   * Checks whether a barcode is included in the set
+   * @param index The index of the barcode
+   * @return true if the barcode is a member of the set, false otherwise
+   */
+  def contains(index: Int): Boolean = Bitset.get(bits, index)
+
+  /**
+   * The number of barcodes in the set including the locked barcodes
+   */
+  private[algorithm] def totalSize: Int = size + parent.numLocked
+
+  /**
+   * Determines the minimum distance between any two barcodes in the set
+   * (including the locked barcodes)
+   * @return The minimum distance, or Integer.MAX_VALUE if the set comprises less than two barcodes
+   */
+  private[algorithm] def globalMinDist: Int = {
+    var min = parent.lockedMinDist
+    var i = Bitset.nextSetBit(bits, 0)
+    while (i >= 0) {
+      if (minDists(i) < min)
+        min = minDists(i)
+      i = Bitset.nextSetBit(bits, i + 1)
+    }
+    min
+  }
+
+  /**
+   * Determines the number of members that have a certain distance to a barcode
+   * @param i	The index of the barcode
+   * @param d	The distance
+   * @return The number of members of the set with distance d to barcode i
+   */
+  private[algorithm] def distCount(i: Int, d: Int): Int = {
+    if (d < distCap)
+      distTable(i * distWidth + d)
+    else if (distTable(i * distWidth + distCap) == 0)
+      0
+    else {
+      // distances beyond the cap are not counted individually => scan the members,
+      // whose distances to barcode i are read by symmetry, so that the row of
+      // barcode i is not required (which a lazy distance matrix would calculate)
+      var count = 0
+      var j = Bitset.nextSetBit(bits, 0)
+      while (j >= 0) {
+        if (parent.dist(j, i) == d)
+          count += 1
+        j = Bitset.nextSetBit(bits, j + 1)
+      }
+      for (lockedD <- parent.lockedDist(i))
+        if (lockedD == d)
+          count += 1
+      count
+    }
+  }
+
+  /**
+   * Determines the smallest distance of a barcode to the members of the set
+   * that is not below a given bound
+   * @param i	The index of the barcode
+   * @param from	The lower bound for the distance
+   * @param excluded	The index of a member that is ignored, or -1
+   * @return The distance, or Integer.MAX_VALUE if no member has such a distance
    */
-  private[algorithm] var (distTable, minDists) = 
-    BarcodeDistanceCalculator.getDistanceTable(parent.dist, parent.barcodes(0).length, indices)
+  private def nextDist(i: Int, from: Int, excluded: Int): Int = {
+    val offset = i * distWidth
+    var d = from
+    while (d < distCap && distTable(offset + d) == 0)
+      d += 1
+    if (d < distCap)
+      d
+    else if (distTable(offset + distCap) == 0)
+      Integer.MAX_VALUE
+    else {
+      // only distances beyond the cap are left => scan the members (by symmetry, see distCount)
+      var min = Integer.MAX_VALUE
+      var j = Bitset.nextSetBit(bits, 0)
+      while (j >= 0) {
+        if (j != excluded) {
+          val d = parent.dist(j, i)
+          if (d >= from && d < min)
+            min = d
+        }
+        j = Bitset.nextSetBit(bits, j + 1)
+      }
+      for (lockedD <- parent.lockedDist(i))
+        if (lockedD >= from && lockedD < min)
+          min = lockedD
+      min
+    }
+  }
 
   /**
    * Sets the specified bit,
@@ -142,20 +314,27 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
    */
   def setBit(index: Int): Unit = {
     // only perform the operation if the bit is not yet set
-    if (!this.set(index)) {
+    if (!contains(index)) {
       // set bit vector entry
-      this.set(index) = true
-      // add to index vector
-      indices += index
+      Bitset.set(bits, index)
+      size += 1
+      hash ^= parent.zobristKeys(index)
+      updateBalance(index, 1)
+      // by symmetry, the row of the new member holds its distances to all barcodes
+      val row = parent.dist(index)
       for (i <- minDists.indices) {
         // update distance table
-        val d = parent.dist(i)(index)
+        val d = row(i)
         if (d != Integer.MAX_VALUE) {
           // increment count of distances
-          distTable(i)(d) += 1
-          if (d < minDists(i))
+          val k = i * distWidth + math.min(d, distCap)
+          distTable(k) = (distTable(k) + 1).toChar
+          if (d < minDists(i)) {
             // this is the new minimum distance!
             minDists(i) = d
+            if (queue != null)
+              queue.update(i, d)
+          }
         }
       }
     }
@@ -169,28 +348,32 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
    */
   def clearBit(index: Int): Unit = {
     // only perform the operation if the bit is not yet cleared
-    if (this.set(index)) {
+    if (contains(index)) {
       // clear bit vector entry
-      this.set(index) = false
-      // remove from index vector
-      indices -= index
+      Bitset.clear(bits, index)
+      size -= 1
+      // the only remaining member (if any)
+      val single = if (size == 1) Bitset.nextSetBit(bits, 0) else -1
+      hash ^= parent.zobristKeys(index)
+      updateBalance(index, -1)
+      val row = parent.dist(index)
       for (i <- minDists.indices) {
         // update distance table
-        var d = parent.dist(i)(index)
+        val d = row(i)
         if (d != Integer.MAX_VALUE) {
           // decrement count of distances
-          distTable(i)(d) -= 1
+          val k = i * distWidth + math.min(d, distCap)
+          distTable(k) = (distTable(k) - 1).toChar
           if (d == minDists(i)) {
             // an element with minimum distance has
             // been removed => 
             // check whether the overall minimum distance has changed
-            if (indices.isEmpty || (indices.size == 1 && i == indices.firstKey))
+            if (parent.numLocked == 0 && (size == 0 || i == single))
               minDists(i) = Integer.MAX_VALUE
-            else {
-              while (distTable(i)(d) == 0)
-                d += 1
-              minDists(i) = d
-            }
+            else
+              minDists(i) = nextDist(i, d, -1)
+            if (queue != null)
+              queue.update(i, minDists(i))
           }
         }
       }
@@ -198,28 +381,109 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
   }
 
   /**
-   * Compares this individual to another individual based on the
-   * Pareto fronts and crowding distances
-   * @param that	The individual to which the current individual should be compared
-   * @return The individual that "won" the comparison
-   */
-  def crowdedComparison(that: BarcodeSubset): BarcodeSubset = {
-    // if one individual has the smaller Pareto front, it wins
-    if (this.paretoFrontIndex < that.paretoFrontIndex)
-      this
-    else if (this.paretoFrontIndex > that.paretoFrontIndex)
-      that
-    // if the Pareto fronts are equal, the individual with the
-    // larger crowding distance wins 
-    else if (this.crowdingDistance > that.crowdingDistance)
-      this
-    else if (this.crowdingDistance < that.crowdingDistance)
-      that
-    // if everything is equal, decide randomly
-    else if (Random.nextBoolean())
-      this
+   * Flips several bits at once, and updates all internal structures
+   * that keep track of the distances. In contrast to calling setBit and clearBit
+   * for each bit, the distance tables are updated in a single pass over the rows
+   * of the distance matrix, where blocks of rows are processed in parallel
+   * @param indices The ascending indices of the bits to be flipped
+   */
+  def flipBits(indices: Array[Int]): Unit = {
+    val (removed, added) = indices.partition(contains)
+    for (index <- indices) {
+      if (contains(index)) {
+        Bitset.clear(bits, index)
+        updateBalance(index, -1)
+      } else {
+        Bitset.set(bits, index)
+        updateBalance(index, 1)
+      }
+      hash ^= parent.zobristKeys(index)
+    }
+    size += added.length - removed.length
+
+    // by symmetry, the rows of the flipped barcodes hold their distances to all barcodes
+    val removedRows = removed.map(parent.dist(_))
+    val addedRows = added.map(parent.dist(_))
+
+    // updates the distance tables of the rows from start (inclusive) to end (exclusive)
+    def updateRows(start: Int, end: Int): Unit = {
+      for (i <- start until end) {
+        val offset = i * distWidth
+        var min = minDists(i)
+        var recover = false
+        for (row <- removedRows) {
+          val d = row(i)
+          if (d != Integer.MAX_VALUE) {
+            // decrement count of distances
+            val k = offset + math.min(d, distCap)
+            distTable(k) = (distTable(k) - 1).toChar
+            // a member with minimum distance has been removed
+            if (d == min)
+              recover = true
+          }
+        }
+        for (row <- addedRows) {
+          val d = row(i)
+          if (d != Integer.MAX_VALUE) {
+            // increment count of distances
+            val k = offset + math.min(d, distCap)
+            distTable(k) = (distTable(k) + 1).toChar
+            if (d < min)
+              min = d
+          }
+        }
+        // recover the minimum from the updated table if required
+        minDists(i) = if (recover) nextDist(i, 0, -1) else min
+        if (queue != null)
+          queue.update(i, minDists(i))
+      }
+    }
+
+    val n = minDists.length
+    val blockSize = BarcodeSelector.flipBlockSize
+    // the queue is not thread-safe => update rows sequentially if there is a queue
+    if (n <= blockSize || queue != null)
+      updateRows(0, n)
     else
-      that
+      ParSeq.range(0, (n + blockSize - 1) / blockSize).foreach(b =>
+        updateRows(b * blockSize, math.min(n, (b + 1) * blockSize)))
+  }
+
+  /**
+   * Adapts the individual to candidates that have been appended to the parent
+   * selector (see BarcodeSelector.addBarcodes). The new candidates are not members,
+   * so only their distance tables are calculated, and the fitness is updated
+   */
+  def extend(): Unit = {
+    val oldN = minDists.length
+    val n = parent.barcodes.length
+    if (oldN < n) {
+      bits = java.util.Arrays.copyOf(bits, Bitset.numWords(n))
+      distTable = java.util.Arrays.copyOf(distTable, n * distWidth)
+      minDists = java.util.Arrays.copyOf(minDists, n)
+      val members = Bitset.toIndices(bits)
+      val base = parent.lockedTable
+      for (i <- oldN until n) {
+        val offset = i * distWidth
+        // start with the distances to the locked barcodes
+        if (base != null) {
+          System.arraycopy(base._1, offset, distTable, offset, distWidth)
+          minDists(i) = base._2(i)
+        } else
+          minDists(i) = Integer.MAX_VALUE
+        val row = parent.dist(i)
+        for (j <- members) {
+          val d = row(j)
+          val k = offset + math.min(d, distCap)
+          distTable(k) = (distTable(k) + 1).toChar
+          if (d < minDists(i))
+            minDists(i) = d
+        }
+      }
+      // the queue does not comprise the new candidates
+      queue = null
+      updateFitness()
+    }
   }
 
   /**
@@ -232,8 +496,8 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
   private[algorithm] def optimizeSetSize(add: Boolean): Unit = {
     // determine the minimum distance between any two barcodes in the current set
 
-    if (indices.nonEmpty) {
-      val globalMin = BarcodeSelector.intSubset(minDists, indices).min
+    if (totalSize > 0) {
+      val globalMin = globalMinDist
 
       if (add) {
         // first local improvement: add all barcodes with the same minimum distance to any barcode
@@ -250,33 +514,131 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
     }
   }
 
+  /**
+   * Determines the minimum distance of a barcode to the members of the set
+   * when one of the members is left out
+   * @param i	The index of the barcode
+   * @param excluded	The index of the member that is left out
+   * @return The minimum distance, or Integer.MAX_VALUE if no other member remains
+   */
+  private def minDistWithout(i: Int, excluded: Int): Int = {
+    val m = minDists(i)
+    if (m == Integer.MAX_VALUE || parent.dist(i, excluded) != m || distCount(i, m) > 1)
+      // the excluded member is not the only one with the minimum distance
+      m
+    else
+      // find the next non-empty entry in the distance table
+      nextDist(i, m + 1, excluded)
+  }
+
+  /**
+   * Calculates the change in the number of member pairs with the minimum distance
+   * if member a is replaced by the barcode b, without applying the swap.
+   * This only requires the distance table entries of a and b.
+   * @param a	The index of the member to remove
+   * @param b	The index of the barcode to add
+   * @param globalMin	The current minimum distance between any two members
+   * @return The change in the number of pairs at the minimum distance,
+   * or Integer.MAX_VALUE if the swap would decrease the minimum distance
+   */
+  private[algorithm] def swapDelta(a: Int, b: Int, globalMin: Int): Int = {
+    if (minDistWithout(b, a) < globalMin)
+      Integer.MAX_VALUE
+    else {
+      // pairs of a with the minimum distance are removed,
+      // pairs of b with the remaining members are added
+      val removed = distCount(a, globalMin)
+      val added = distCount(b, globalMin) - (if (parent.dist(a, b) == globalMin) 1 else 0)
+      added - removed
+    }
+  }
+
+  /**
+   * Performs a first-improvement hill climbing on the set
+   * by swapping members with non-members. A swap is accepted if it
+   * reduces the number of member pairs with the minimum distance
+   * (which eventually increases the minimum distance). Afterwards,
+   * all barcodes that do not decrease the minimum distance are added.
+   * @param maxMoves	The maximum number of swaps to apply
+   * @param maxTries	The maximum number of swap partners to evaluate for each member
+   */
+  private[algorithm] def localSearch(maxMoves: Int, maxTries: Int): Unit = {
+    var moves = 0
+    var improved = true
+    while (improved && moves < maxMoves && totalSize >= 2) {
+      improved = false
+      val globalMin = globalMinDist
+
+      // only members that have the minimum distance to another member can improve the set
+      val removal = Random.shuffle(Bitset.toIndices(bits).filter(minDists(_) == globalMin).toIndexedSeq).iterator
+      val outside = Random.shuffle(minDists.indices.filter(!contains(_)))
+
+      while (!improved && removal.hasNext) {
+        val a = removal.next()
+        val it = outside.iterator.take(maxTries)
+        while (!improved && it.hasNext) {
+          val b = it.next()
+          if (swapDelta(a, b, globalMin) < 0) {
+            // apply the improving swap
+            clearBit(a)
+            setBit(b)
+            moves += 1
+            improved = true
+          }
+        }
+      }
+    }
+    // add all barcodes that keep the minimum distance
+    optimizeSetSize(true)
+  }
+
   /**
    *  Optimizes the set's color balance by removing codes
    */
   private[algorithm] def optimizeColorBalance(): Unit = {
-    if (indices.nonEmpty) {
-      val balance = parent.getColorBalance(set)
-      do {
+    if (size > 0) {
+      val codes = parent.colorCodes
+      val length = balance.length
+      // members with the same color pattern achieve the same improvement
+      // => group them (in ascending order) and keep one score per group
+      val groups = Bitset.toIndices(bits).groupBy(parent.colorClasses(_)).values.toArray
+      // the position of the next member to remove in each group
+      val heads = new Array[Int](groups.length)
+      // the improvement in color balance when removing a member of the group,
+      // where b^2 - (b - c)^2 = 2bc - 1 for color codes c of 1 or -1
+      val scores = groups.map(group => {
+        val offset = group(0) * length
+        var sum = 0
+        for (j <- 0 until length)
+          sum += 2 * balance(j) * codes(offset + j) - 1
+        sum
+      })
+
+      while (size > 0) {
         // determine the barcode that achieves the maximum improvement in color balance
-        // when removed from the set
-        val improvement = indices.map(i => {
-          Array.tabulate(balance.length)(j => {
-            //math.abs(balance(j)) compare math.abs(balance(j) - parent.colorCodes(i)(j))
-            math.pow(balance(j), 2) - math.pow(balance(j) - parent.colorCodes(i)(j), 2)
-          }).sum
-        }).zip(indices).maxBy(_._1)
-
-        if (improvement._1 <= 0)
+        // when removed from the set (the smallest index in case of ties)
+        var best = -1
+        for (g <- groups.indices if heads(g) < groups(g).length)
+          if (best < 0 || scores(g) > scores(best) ||
+            (scores(g) == scores(best) && groups(g)(heads(g)) < groups(best)(heads(best))))
+            best = g
+
+        if (best < 0 || scores(best) <= 0)
           // no more greedy improvement possible => terminate
           return
-        else {
-          // remove the barcode and update the color balance table
-          // for the next iteration
-          clearBit(improvement._2)
-          for (j <- balance.indices)
-            balance(j) -= parent.colorCodes(improvement._2)(j)
-        }
-      } while (indices.nonEmpty)
+
+        // remove the barcode, which also updates the color balance
+        // for the next iteration
+        val removed = groups(best)(heads(best))
+        heads(best) += 1
+        clearBit(removed)
+
+        // the removal changes the balance at each position by the color code of the
+        // barcode, which changes the score of each group by twice the scalar product
+        // of the color codes
+        for (g <- groups.indices if heads(g) < groups(g).length)
+          scores(g) -= 2 * parent.colorProduct(removed, groups(g)(0))
+      }
     }
   }
 
@@ -287,15 +649,11 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
   def mutate(): Unit = {
 
     // determine 1% of the bits to be flipped
-    val shuffleIdx = Random.shuffle(0 to set.length - 1).take(scala.math.max(1, scala.math.round(set.length * 0.1).toInt))
+    val n = parent.barcodes.length
+    val shuffleIdx = Random.shuffle(0 to n - 1).take(scala.math.max(1, scala.math.round(n * 0.1).toInt))
 
     // flip these bits
-    for (i <- shuffleIdx) {
-      if (set(i))
-        clearBit(i)
-      else
-        setBit(i)
-    }
+    flipBits(shuffleIdx.toArray.sorted)
     // perform local improvements
     val choice = Random.nextDouble
     if (choice < 0.25) {
@@ -321,22 +679,38 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
    */
   def recombine(that: BarcodeSubset): (BarcodeSubset, BarcodeSubset) = {
     // define a random split point
-    val splitPoint = Random.nextInt(set.length - 1)
+    val splitPoint = Random.nextInt(parent.barcodes.length - 1)
 
-    val joinedParents = (this.set zip that.set).zipWithIndex
     // first individual: first head, second tail
-    (new BarcodeSubset(parent, joinedParents.map(gene => {
-      if (gene._2 <= splitPoint)
-        gene._1._1
-      else
-        gene._1._2
-    })), new BarcodeSubset(parent, joinedParents.map(gene => {
-      // second individual: second tail, first head
-      if (gene._2 <= splitPoint)
-        gene._1._2
+    (deriveChild(that, Bitset.crossover(this.bits, that.bits, splitPoint)),
+      // second individual: second head, first tail
+      deriveChild(that, Bitset.crossover(that.bits, this.bits, splitPoint)))
+  }
+
+  /**
+   * Creates a child of this individual and another individual.
+   * The child copies the distance tables of the parent that differs in fewer bits
+   * and flips the differing bits. If more bits differ than the child comprises barcodes,
+   * the tables are calculated from scratch instead
+   * @param that The second parent individual
+   * @param childBits The set of the child
+   * @return The child individual
+   */
+  private def deriveChild(that: BarcodeSubset, childBits: Array[Long]): BarcodeSubset = {
+    val diffThis = Bitset.xor(this.bits, childBits)
+    val diffThat = Bitset.xor(that.bits, childBits)
+    val (closest, diff) =
+      if (Bitset.cardinality(diffThis) <= Bitset.cardinality(diffThat))
+        (this, diffThis)
       else
-        gene._1._1
-    })))
+        (that, diffThat)
+    if (Bitset.cardinality(diff) > Bitset.cardinality(childBits))
+      new BarcodeSubset(parent, childBits)
+    else {
+      val child = new BarcodeSubset(parent, closest.bits.clone(), closest)
+      child.flipBits(Bitset.toIndices(diff))
+      child
+    }
   }
 
   /**
@@ -345,23 +719,22 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
    */
   def updateFitness(): Unit = {
 
-    if (indices.size < 2)
-      fitness = (Int.MinValue, Double.MinValue, indices.size)
+    if (totalSize < 2)
+      fitness = (Int.MinValue, Double.MinValue, totalSize)
     else {
-      val globalMin = BarcodeSelector.intSubset(minDists, indices).min
+      val globalMin = globalMinDist
 
       if (parent.balanceColors) {
         // return color balance score as second objective
-        val balance = parent.getColorBalance(set)
-        val balScore = 1.0 - balance.map(x => x * x).sum.toDouble / (indices.size * indices.size * balance.length)
+        val balScore = 1.0 - balance.map(x => x * x).sum.toDouble / (totalSize * totalSize * balance.length)
         fitness = (globalMin,
           balScore,
-          indices.size)
+          totalSize)
       } else {
         // return the mean value of the smallest 10% of the distances as second objective
 
         // determine the number of distances that corresponds to 10%
-        val threshold = scala.math.round(indices.size * (indices.size - 1) * 0.1).toInt
+        val threshold = scala.math.round(totalSize * (totalSize - 1) * 0.1).toInt
 
 //        var meanDist = 0
 //        var remaining = threshold
@@ -386,12 +759,14 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
 //            d += 1
 //          }
 //        }
-        val minDistCount = distTable.map(x => -x(globalMin)).sum
+        var minDistCount = 0
+        for (i <- minDists.indices)
+          minDistCount -= distCount(i, globalMin)
 
         // create fitness vector
         fitness = (globalMin,
           minDistCount,
-          indices.size)
+          totalSize)
 
       }
     }
@@ -433,7 +808,7 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
   }
 
   def getBarcodes(): Array[String] = {
-    BarcodeSelector.booleanSubset(parent.barcodes, set).toArray
+    parent.locked ++ Bitset.toIndices(bits).map(parent.barcodes(_))
   }
 
   def getNumBarcodes(): Int = {
@@ -451,7 +826,7 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
     else if (fitness._3 == 1)
       "1 barcode"
     else
-      fitness._3 + " barcodes with minimum distance " + fitness._1
+      fitness._3 + " barcodes with minimum distance " + fitness._1 + describeGap
   }
 }
 
@@ -461,38 +836,76 @@ class BarcodeSubset(val parent: BarcodeSelector, var set: Array[Boolean]) extend
 object BarcodeSelector {
 
   /**
-   * Indexes an array using a Boolean index vector that specifies which elements should be kept
-   * @param x	The array that is indexed
-   * @param idx	The index vector, where true means that the element is kept
-   * @return A sequence containing only the elements specified by the index vector
+   * The approximate memory in bytes used by the fitness cache of a selector
    */
-  def booleanSubset[T: ClassTag](x: Array[T], idx: Array[Boolean]): Seq[T] =
-    {
-      // old variant - more functional, but slower
-      //for ((el, i) <- (x zip idx) if i) yield el
-      for (i <- x.indices if idx(i)) yield x(i)
-    }
+  val fitnessCacheBytes: Long = 64L * 1024 * 1024
 
   /**
-   * Indexes an array using a set of indices that specifies which elements should be kept
-   * @param x	The array that is indexed
-   * @param idx	The sorted set of indices
-   * @return A sequence containing only the elements specified by the index set
+   * The number of generations after which the elite individuals
+   * are refined by a local search
    */
-  def intSubset[T: ClassTag](x: Array[T], idx: mutable.SortedSet[Int]): Seq[T] =
-    {
-      idx.map(x(_)).toSeq
-    }
+  val localSearchInterval = 10
 
   /**
-   * Converts a Boolean index vector into an integer index vector
-   *  @param set	The Boolean index vector, where true means that the element is kept
-   *  @return A sequence of integer values specifying the indices that are included
+   * The maximum number of swaps applied in one local search
    */
-  def setToIndex[T: ClassTag](set: Array[Boolean]): Seq[Int] =
-    {
-      for (i <- set.indices if set(i)) yield i
-    }
+  val localSearchMoves = 20
+
+  /**
+   * The maximum number of swap partners evaluated for each member in one local search
+   */
+  val localSearchTries = 200
+
+  /**
+   * The maximum number of distances that are counted individually in the
+   * distance tables of the individuals, which limits their memory for long barcodes.
+   * Below this bound, the cap is one more than the barcode length, so that all distances
+   * are counted individually. Distances at or beyond the cap are determined by scanning
+   * the set members, which costs O(|S|) per count or recovered minimum distance
+   * and thus O(n * |S|) per fitness evaluation.
+   */
+  val distanceTableCap = 64
+
+  /**
+   * Determines the color codes of barcodes
+   * @param barcodes	The barcodes
+   * @return The color codes (1 for A/C, -1 for G/T) of all barcodes one after another
+   */
+  private def getColorCodes(barcodes: Array[String]): Array[Byte] = barcodes.flatMap(barcode => {
+    barcode.map(c => if (c == 'A' || c == 'C') 1.toByte else -1.toByte)
+  })
+
+  /**
+   * Determines the color codes of barcodes as bit patterns
+   * @param barcodes	The barcodes
+   * @return The bit sets of all barcodes one after another,
+   * where a set bit corresponds to a code of 1
+   */
+  private def getColorPatterns(barcodes: Array[String]): Array[Long] = barcodes.flatMap(barcode =>
+    Bitset.fromBooleans(barcode.toCharArray.map(c => c == 'A' || c == 'C')))
+
+  /**
+   * Assigns identifiers to the color patterns of barcodes
+   * @param barcodes	The barcodes
+   * @return An identifier for each barcode, which is equal for barcodes with the same pattern
+   */
+  private def getColorClasses(barcodes: Array[String]): Array[Int] = {
+    val patterns = barcodes.map(_.map(c => if (c == 'A' || c == 'C') '1' else '0'))
+    val ids = patterns.distinct.zipWithIndex.toMap
+    patterns.map(ids(_))
+  }
+
+  /**
+   * The number of distance table rows that are updated
+   * in one parallel task when flipping several bits at once
+   */
+  val flipBlockSize = 4096
+
+  /**
+   * The maximum number of candidates and locked barcodes, as the distance tables
+   * of subsets count the barcodes with 16-bit counters (see BarcodeSubset)
+   */
+  val maxNumBarcodes: Int = Character.MAX_VALUE
 
 }
 
@@ -500,38 +913,193 @@ object BarcodeSelector {
  * The main barcode selector class providing methods to extract subsets of
  * barcodes with maximum pairwise distances
  * @param barcodes	The full set of barcode candidates from which subsets are chosen
+ * (which can be extended by addBarcodes)
+ * @param locked	Barcodes that are included in every subset (e.g. an existing barcode kit
+ * that should be extended). They are not part of the candidates, so that only their
+ * distances to the candidates are calculated
+ * @param memoryFraction	The fraction of the maximum heap size (-Xmx) that the rows of the
+ * distance matrix may occupy before they are calculated on demand (see DistanceMatrix)
  */
-class BarcodeSelector(val barcodes: Array[String]) {
-  // Map that stores known fitness values to avoid recalculation
-  val storedFitness = scala.collection.mutable.Map.empty[IndexedSeq[Any], (Int, Double, Int)]
-  // Stored distance matrix for the barcode set 
-  val dist: Array[Array[Int]] = BarcodeDistanceCalculator.getBarcodeDists(barcodes)
+class BarcodeSelector(var barcodes: Array[String], val locked: Array[String], memoryFraction: Double) {
+
+  /**
+   * Creates a selector with the default memory fraction for the distance matrix
+   * @param barcodes	The full set of barcode candidates from which subsets are chosen
+   * @param locked	Barcodes that are included in every subset
+   */
+  def this(barcodes: Array[String], locked: Array[String]) =
+    this(barcodes, locked, DistanceMatrix.defaultMemoryFraction)
+
+  /**
+   * Creates a selector without locked barcodes
+   * @param barcodes	The full set of barcode candidates from which subsets are chosen
+   */
+  def this(barcodes: Array[String]) = this(barcodes, new Array[String](0))
+
+  // The number of locked barcodes
+  val numLocked: Int = locked.length
+  require(barcodes.length + numLocked <= BarcodeSelector.maxNumBarcodes,
+    "At most " + BarcodeSelector.maxNumBarcodes + " candidates and locked barcodes are supported!")
+  // Random keys of the barcodes for the Zobrist hashes of subsets
+  var zobristKeys: Array[Long] = Array.fill(barcodes.length)(Random.nextLong())
+  // Cache that stores known fitness values to avoid recalculation
+  // (bounded to approximately BarcodeSelector.fitnessCacheBytes)
+  val storedFitness = new FitnessCache[(Int, Double, Int)](
+    math.max(1024, (BarcodeSelector.fitnessCacheBytes / (barcodes.length / 8 + 64)).toInt))
+  // Stored distance matrix for the barcode set, which calculates its rows on demand if
+  // it does not fit into memory (see DistanceMatrix), and distances of the candidates (rows)
+  // to the locked barcodes (columns), which are calculated without the positions
+  // at which all barcodes agree (see BarcodePool.stripConstantPositions)
+  var (dist: DistanceMatrix, lockedDist: Array[Array[Int]]) = {
+    val (candidates, others) = BarcodePool.stripConstantPositions(barcodes, locked)
+    (DistanceMatrix(candidates, memoryFraction), BarcodeDistanceCalculator.getCrossDists(candidates, others))
+  }
+  // The minimum distance among the locked barcodes
+  val lockedMinDist: Int = BarcodeDistanceCalculator.getMinDist(locked)
+  // The number of distances that are counted individually in the distance tables of subsets
+  // (see BarcodeSubset), which exceeds all distances, as they are at most the length
+  // of the longer barcode (unless the length reaches BarcodeSelector.distanceTableCap)
+  val distCap: Int = math.min((barcodes ++ locked).map(_.length).max + 1, BarcodeSelector.distanceTableCap)
+  // The distance tables and minimum distances of the candidates with respect to the
+  // locked barcodes, from which the tables of all subsets start, or null without locked barcodes
+  var lockedTable: (Array[Char], Array[Int]) = getLockedTable
   // A map mapping barcode strings to color indices (1/-1)
-  val colorCodes: Array[immutable.IndexedSeq[Int]] = barcodes.map(barcode => {
-    barcode.map(c => if (c == 'A' || c == 'C') 1 else -1)
-  })
+  // (stored row by row in a flat array, where the code of barcode i
+  // at position j is found at i * barcode length + j)
+  var colorCodes: Array[Byte] = BarcodeSelector.getColorCodes(barcodes)
+  // The color codes as bit patterns, where a set bit corresponds to a code of 1
+  // (stored in colorWords 64-bit words per barcode)
+  val colorWords: Int = Bitset.numWords(barcodes(0).length)
+  var colorPatterns: Array[Long] = BarcodeSelector.getColorPatterns(barcodes)
+  // Identifiers of the color patterns, which are equal for barcodes with the same pattern
+  var colorClasses: Array[Int] = BarcodeSelector.getColorClasses(barcodes)
   var balanceColors: Boolean = false
 
+  /**
+   * Calculates the distance tables of the candidates with respect to the locked barcodes
+   * @return The distance tables and minimum distances, or null without locked barcodes
+   */
+  private def getLockedTable: (Array[Char], Array[Int]) =
+    if (numLocked == 0)
+      null
+    else
+      BarcodeDistanceCalculator.getCappedDistanceTable(lockedDist, distCap, locked.indices.toArray)
+
+  /**
+   * Appends further candidates to the barcode pool. Only the distances of the new
+   * candidates to the existing candidates and among each other are calculated.
+   * Existing subsets remain valid after calling their extend method, which
+   * adds the distance tables of the new candidates.
+   * Must not be called while a selection is running.
+   * @param newBarcodes	The additional candidates (of the same length as the existing ones)
+   * @param subsets	Subsets of this selector that should be extended immediately
+   */
+  def addBarcodes(newBarcodes: Array[String], subsets: Iterable[BarcodeSubset] = Nil): Unit = {
+    require(newBarcodes.forall(_.length == barcodes(0).length), "All barcodes must have the same length!")
+    require(barcodes.length + newBarcodes.length + numLocked <= BarcodeSelector.maxNumBarcodes,
+      "At most " + BarcodeSelector.maxNumBarcodes + " candidates and locked barcodes are supported!")
+    val n = barcodes.length
+    val m = newBarcodes.length
+
+    // extend the distance matrix by the new candidates, which are compared without the
+    // positions at which all barcodes agree (which may be fewer than before)
+    val (stripped, strippedLocked) = BarcodePool.stripConstantPositions(barcodes ++ newBarcodes, locked)
+    dist = dist.extend(stripped)
+
+    barcodes = barcodes ++ newBarcodes
+    zobristKeys = zobristKeys ++ Array.fill(m)(Random.nextLong())
+    lockedDist = lockedDist ++ BarcodeDistanceCalculator.getCrossDists(stripped.drop(n), strippedLocked)
+    lockedTable = getLockedTable
+    colorCodes = colorCodes ++ BarcodeSelector.getColorCodes(newBarcodes)
+    colorPatterns = colorPatterns ++ BarcodeSelector.getColorPatterns(newBarcodes)
+    colorClasses = BarcodeSelector.getColorClasses(barcodes)
+    // the fitness of a subset depends on the distances of all candidates to its members
+    storedFitness.clear()
+
+    for (subset <- subsets)
+      subset.extend()
+  }
+
+  /**
+   * Calculates the scalar product of the color codes of two barcodes
+   * @param a	The index of the first barcode
+   * @param b	The index of the second barcode
+   * @return The number of positions with the same color
+   * minus the number of positions with different colors
+   */
+  def colorProduct(a: Int, b: Int): Int = {
+    var different = 0
+    for (w <- 0 until colorWords)
+      different += java.lang.Long.bitCount(colorPatterns(a * colorWords + w) ^ colorPatterns(b * colorWords + w))
+    barcodes(0).length - 2 * different
+  }
+
   /**
    * Calculates the color balance of a barcode set
-   * @param set	A logical vector specifying the barcode subset
+   * @param bits	A bit set specifying the barcode subset
    * @return An array of color balance sums for each barcode position
    */
-  def getColorBalance(set: Array[Boolean]): Array[Int] = {
-    val balance = BarcodeSelector.booleanSubset(colorCodes, set).reduce((c1, c2) => {
-      for (i <- c1.indices) yield c1(i) + c2(i)
-    }).toArray
+  def getColorBalance(bits: Array[Long]): Array[Int] = {
+    val balance = new Array[Int](barcodes(0).length)
+    // the locked barcodes belong to every set
+    for (barcode <- locked; j <- balance.indices)
+      balance(j) += (if (barcode(j) == 'A' || barcode(j) == 'C') 1 else -1)
+    var i = Bitset.nextSetBit(bits, 0)
+    while (i >= 0) {
+      for (j <- balance.indices)
+        balance(j) += colorCodes(i * balance.length + j)
+      i = Bitset.nextSetBit(bits, i + 1)
+    }
     balance
   }
 
+  /**
+   * Calculates upper bounds for the number of barcodes (including the locked barcodes)
+   * of subsets with a given minimum distance. Each bound is the smaller one of the analytic
+   * bound for the barcode length and the clique cover bound of the candidates that have
+   * the minimum distance to all locked barcodes (see CodeBounds). The clique cover
+   * requires the rows of all these candidates, so that it is omitted if the distance matrix
+   * calculates its rows on demand, and the number of these candidates is used instead
+   * @return The bounds indexed by the minimum distance (from 0 to the barcode length)
+   */
+  def getSizeBounds: Array[Int] = {
+    val length = barcodes(0).length
+    // the analytic bounds only depend on the positions at which the barcodes differ
+    val positions = BarcodePool.getVariablePositions(barcodes ++ locked)
+    val effectiveLength = if (positions == null) length else positions.length
+    ParArray.tabulate(length + 1)(d => {
+      if (numLocked > 1 && d > lockedMinDist)
+        // the locked barcodes are closer to each other
+        0
+      else {
+        val eligible = barcodes.indices.filter(i => lockedDist(i).forall(_ >= d)).toArray
+        val cover = numLocked +
+          (if (dist.storesAllRows) CodeBounds.cliqueCover(eligible, d, dist(_)) else eligible.length)
+        (CodeBounds.maxNumBarcodes(effectiveLength, d) min cover).toInt
+      }
+    }).toArray
+  }
+
+  /**
+   * Checks whether subsets reach the size bounds for all minimum distances
+   * that allow at least two barcodes, so that no better subsets exist
+   * @param sets	The subsets (usually the non-dominated subsets found so far)
+   * @param sizeBounds	The bounds for the subset sizes (see getSizeBounds)
+   * @return true if all bounds are reached, false otherwise
+   */
+  private def reachesBounds(sets: Array[BarcodeSubset], sizeBounds: Array[Int]): Boolean =
+    sizeBounds.indices.forall(d => sizeBounds(d) < 2 ||
+      sets.exists(set => set.fitness._1 >= d && set.fitness._3 >= sizeBounds(d)))
+
   /**
    * Recalculates the fitness vector of the supplied individual
    * @param ind	The individual to update
    */
-  private def updateFitness(ind: BarcodeSubset) = {
-    if (storedFitness.contains(ind.set.deep))
-      // return the fitness value that has been calculated previously
-      storedFitness(ind.set.deep)
+  private def updateFitness(ind: BarcodeSubset): Unit = {
+    val known = storedFitness.get(ind.hash, ind.bits)
+    if (known.isDefined)
+      // use the fitness value that has been calculated previously
+      ind.fitness = known.get
     else
       ind.updateFitness()
   }
@@ -552,48 +1120,50 @@ class BarcodeSelector(val barcodes: Array[String]) {
     val subset = new BarcodeSubset(this,
       if (direction == INIT_FORWARD) {
         // forward selection: start with empty set
-        Array.fill(barcodes.length)(false)
+        Bitset.empty(barcodes.length)
       } else {
         // backward selection: start with full set
-        Array.fill(barcodes.length)(true)
+        Bitset.full(barcodes.length)
       })
 
-    //result += new BarcodeSet(this,subset.set,true)
-    var oldDist = if (subset.indices.isEmpty)
+    //result += new BarcodeSet(this,subset.bits,true)
+    var oldDist = if (subset.size == 0)
       -1
     else
-      subset.indices.map(subset.minDists(_)).min
+      subset.globalMinDist
 
     if (direction == INIT_BACKWARD)
-      result += new BarcodeSubset(this, subset.set.clone, true)
+      result += new BarcodeSubset(this, subset.bits.clone, true)
+
+    // keep the candidates (non-members for a forward selection, members for a backward selection)
+    // in buckets according to their minimum distances, where the last bucket holds infinite distances
+    val queue = new BucketQueue(barcodes.length, barcodes(0).length + 1)
+    for (i <- barcodes.indices)
+      queue.insert(i, subset.minDists(i))
+    subset.queue = queue
 
     for (i <- barcodes.indices) {
 
       if (direction == INIT_FORWARD) {
-        var max = (0, -1)
-        for (i <- Random.shuffle(0 to barcodes.length - 1))
-          if (!subset.set(i) && max._2 < subset.minDists(i))
-            max = (i, subset.minDists(i))
+        // choose a random non-member with the maximum minimum distance
+        val next = queue.pollMax()
+        val max = (next, subset.minDists(next))
 
         if (!bestPerDist || oldDist != max._2) {
-          result += new BarcodeSubset(this, subset.set.clone, true)
+          result += new BarcodeSubset(this, subset.bits.clone, true)
           oldDist = max._2
         }
 
         subset.setBit(max._1)
       } else {
 
-        var min = (0, Integer.MAX_VALUE)
-        if (subset.indices.size == 1) {
-          min = (subset.indices.firstKey, Integer.MAX_VALUE)
-        } else {
-          for (i <- Random.shuffle(0 to barcodes.length - 1))
-            if (subset.set(i) && min._2 > subset.minDists(i))
-              min = (i, subset.minDists(i))
-        }
+        // choose a random member with the minimum minimum distance
+        // (the last remaining member has an infinite distance)
+        val next = queue.pollMin()
+        val min = (next, subset.minDists(next))
         subset.clearBit(min._1)
         if (!bestPerDist || oldDist != min._2) {
-          result += new BarcodeSubset(this, subset.set.clone, true)
+          result += new BarcodeSubset(this, subset.bits.clone, true)
           oldDist = min._2
         }
       }
@@ -601,7 +1171,7 @@ class BarcodeSelector(val barcodes: Array[String]) {
     }
 
     if (direction == INIT_FORWARD)
-      result += new BarcodeSubset(this, subset.set, true)
+      result += new BarcodeSubset(this, subset.bits, true)
 
     new BarcodeSetCollection(result.toArray[BarcodeSet])
   }
@@ -642,9 +1212,158 @@ class BarcodeSelector(val barcodes: Array[String]) {
     result.toArray[T]
   }
 
+  /**
+   * Performs a single run of the multi-objective Genetic Algorithm
+   * @param run	The number of the run (for progress messages)
+   * @param numIndividuals	The population size for the GA
+   * @param numOffspring		The number of offspring in each generation of the GA
+   * @param numRuns					The total number of independent GA runs
+   * @param numGenerations	The number of generations for which the GA is run
+   * @param numStreams	The number of parallel streams for recombination, mutation and evaluation
+   * @param initialization	The initialization method for the population (see InitType)
+   * @param seeds	Subsets that are included in the initial population before the
+   * remaining individuals are created according to the initialization method
+   * @param crowdingObjectives	The objectives and normalization divisors for the crowding distance
+   * @param archive	The archive shared by all runs that receives the non-dominated individuals of each generation
+   * @param sizeBounds	The bounds for the subset sizes at which all runs terminate (see getSizeBounds),
+   * or null to disable early stopping
+   * @param completedGenerations	A counter of the generations completed by all concurrent runs
+   * @param cancelled	A flag shared by all concurrent runs that is set when the user cancels the selection
+   * @param boundsReached	A flag shared by all concurrent runs that is set when the archive reaches the size bounds
+   * @param progress	An optional listener that receives the progress of the barcode selection
+   */
+  private def runGA(run: Int, numIndividuals: Int, numOffspring: Int, numRuns: Int, numGenerations: Int,
+                    numStreams: Int, initialization: InitType, seeds: Array[Array[Long]],
+                    crowdingObjectives: Array[(Int, Double)],
+                    archive: ParetoArchive[BarcodeSubset], sizeBounds: Array[Int],
+                    completedGenerations: AtomicInteger, cancelled: AtomicBoolean,
+                    boundsReached: AtomicBoolean, progress: BarcodeProgressListener): Unit = {
+    if (!BarcodeProgressListener.report(progress,
+      completedGenerations.get * 1.0 / (numGenerations * numRuns) * 100, "Run " + run + "/" + numRuns + " Initializing..."))
+      cancelled.set(true)
+    if (cancelled.get)
+      return
+
+    // start with the seeds, and create the remaining individuals
+    // according to the initialization type
+    val initialSeeds = seeds.take(numIndividuals).map(bits => new BarcodeSubset(this, bits.clone(), true))
+    val numRemaining = numIndividuals - initialSeeds.length
+    val individuals = new PopulationManager[BarcodeSubset](initialSeeds ++ (initialization match {
+      case _ if numRemaining == 0 => new Array[BarcodeSubset](0)
+      case INIT_RANDOM => Array.tabulate(numRemaining)((i: Int) => {
+        // random generation of individuals
+        new BarcodeSubset(this, Bitset.random(barcodes.length), true)
+      })
+      case defaultCase =>
+        // forward/backward selection (the remaining individuals of INIT_FROM_FILE
+        // are created by a forward selection)
+        val candidates = stepwiseBarcodeSelection(
+          if (initialization == INIT_FROM_FILE) INIT_FORWARD else initialization).sets
+
+        Array.tabulate(numRemaining)((i: Int) => {
+          val bits =
+            if (candidates.length > numRemaining)
+            // more candidates than required individuals => sample randomly
+              candidates(Random.nextInt(candidates.length)).asInstanceOf[BarcodeSubset].bits.clone()
+            else // not more candidates than individuals => take all candidates
+            // and add random individuals if required
+              if (i < candidates.length)
+                candidates(i).asInstanceOf[BarcodeSubset].bits.clone()
+              else
+                Bitset.random(barcodes.length)
+          new BarcodeSubset(this, bits, true)
+        })
+    }), crowdingObjectives)
+
+    var gen = 0
+    while (gen < numGenerations && !cancelled.get && !boundsReached.get) {
+      gen += 1
+
+      // update progress each generation
+      if (!BarcodeProgressListener.report(progress,
+        completedGenerations.incrementAndGet() * 1.0 / (numGenerations * numRuns) * 100,
+        "Run " + run + "/" + numRuns + " Iteration " + gen + "/" + numGenerations))
+        cancelled.set(true)
+
+      if (gen % BarcodeSelector.localSearchInterval == 0) {
+        // refine copies of the individuals on the first Pareto front by a local search
+        val refined = individuals.population.filter(_.paretoFrontIndex == 0).par.map(ind => {
+          val copy = new BarcodeSubset(ind)
+          copy.localSearch(BarcodeSelector.localSearchMoves, BarcodeSelector.localSearchTries)
+          copy.updateFitness()
+          copy
+        })
+        individuals.population ++= refined.seq
+        // the refined individuals take part in the tournaments
+        individuals.updateFronts()
+      }
+
+      // generate offspring in parallel
+      val offspring = ParSeq.range(1, numOffspring / numStreams).flatMap(i => {
+      //val offspring = ParSeq.range(1, numOffspring).flatMap((i) => {
+        val parent1 = individuals.tournament()
+        val parent2 = individuals.tournament()
+
+        // generate two offspring by cross-over of the parents
+        val (offspring1, offspring2) = parent1 recombine parent2
+
+        // mutate offspring
+        offspring1.mutate()
+        offspring2.mutate()
+
+        // calculate fitness of offspring, and add them to the population
+        updateFitness(offspring1)
+        updateFitness(offspring2)
+        Array(offspring1, offspring2)
+      })
+
+      individuals.population ++= offspring.toIndexedSeq
+
+      // determine Pareto fronts, and select the survivors
+      // for the next generation by non-dominated sorting          
+      individuals.nonDominatedSorting(numIndividuals)
+
+      // update fitness cache for quick calculation
+      for (ind <- individuals.population)
+        storedFitness.put(ind.hash, ind.bits, ind.fitness)
+
+      // add the best individuals of the generation to the archive
+      archive.insertAll(individuals.population.filter(_.paretoFrontIndex == 0))
+
+      // terminate all runs as soon as the archived subsets are provably optimal
+      if (sizeBounds != null && reachesBounds(archive.getNonDominated, sizeBounds))
+        boundsReached.set(true)
+    }
+  }
+
+  /**
+   * Maps barcode sets (e.g. of a previous result) onto the current candidates.
+   * Barcodes that are not among the candidates (including locked barcodes) are skipped
+   * @param sets	The barcode sets
+   * @return The non-empty subsets of candidates as bit sets
+   */
+  def mapToPool(sets: Array[BarcodeSet]): Array[Array[Long]] = {
+    val indices = new java.util.HashMap[String, Integer](barcodes.length * 2)
+    for (i <- barcodes.indices)
+      indices.put(barcodes(i), i)
+    sets.map(set => {
+      val bits = Bitset.empty(barcodes.length)
+      for (barcode <- set.getBarcodes) {
+        val i = indices.get(barcode.toUpperCase)
+        if (i != null)
+          Bitset.set(bits, i)
+      }
+      bits
+    }).filter(Bitset.nextSetBit(_, 0) >= 0)
+  }
+
   /**
    * Selects barcode sets with maximum pairwise distances between the members
-   * according to a multi-objective Genetic Algorithm
+   * according to a multi-objective Genetic Algorithm.
+   * The independent runs are executed concurrently. Unless colors are balanced,
+   * the runs terminate early if the subsets reach the size bounds (see getSizeBounds),
+   * and the resulting subsets report their gap to these bounds. With balanced colors,
+   * the bounds are not calculated.
    * @param numIndividuals	The population size for the GA
    * @param numOffspring		The number of offspring in each generation of the GA
    * @param numRuns					The number of independent GA runs
@@ -653,109 +1372,108 @@ class BarcodeSelector(val barcodes: Array[String]) {
    * 							be balanced for each position across the barcode set
    * @param initialization	The initialization method for the population (see InitType)
    * @param progress	An optional listener that receives the progress of the barcode selection
+   * @param initFile	The BarcodeDesigner JSON file with the sets that seed the population
+   * (only used with InitType.INIT_FROM_FILE)
    */
   def  selectBarcodesGA(numIndividuals: Int = 100, numOffspring: Int = 200,
     numRuns: Int = 1, numGenerations: Int = 1000, balanceColors: Boolean = false,
                         numStreams: Int = 8,
-    initialization: InitType = InitType.INIT_FORWARD, progress: BarcodeProgressListener = null): BarcodeSetCollection =
+    initialization: InitType = InitType.INIT_FORWARD, progress: BarcodeProgressListener = null,
+                        initFile: String = null): BarcodeSetCollection =
     {
       this.balanceColors = balanceColors
+      // cached fitness values depend on the objectives
+      storedFitness.clear()
+
+      // each flipped bit of a subset requires the row of the barcode, so that
+      // uncached rows are calculated many times
+      if (!dist.storesAllRows)
+        BarcodeProgressListener.report(progress, 0, "The distance matrix exceeds the available memory, " +
+          "so its rows are calculated on demand, which slows down the Genetic Algorithm " +
+          "(consider a larger maximum heap size or a heuristic selection)")
+
+      val seeds =
+        if (initialization == INIT_FROM_FILE)
+          mapToPool(new BarcodeSetCollection(initFile).sets)
+        else
+          new Array[Array[Long]](0)
 
       // create tuples of objectives and maximum values of these objectives for crowding distance calculation
-      val maxDist = dist.flatten.filter(_ != Int.MaxValue).max.toDouble
-      val crowdingObjectives = Array(0, 2) zip Array(maxDist, dist.length.toDouble)
-
-      // store the best solutions across all runs in a separate object
-      val allSolutions = new PopulationManager[BarcodeSubset](Array(), crowdingObjectives)
-
-      for (run <- 1 to numRuns) {
-        if (progress != null)
-          // update progress
-          if (!progress.progress(((run - 1) * numGenerations) * 1.0 / (numGenerations * numRuns) * 100,
-            "Initializing..."))
-            return null
-        // initialize population according to the initialization type
-        val individuals = new PopulationManager[BarcodeSubset](initialization match {
-          case INIT_RANDOM => Array.tabulate(numIndividuals)((i: Int) => {
-            // random generation of individuals
-            val set = Array.fill(barcodes.length)(Random.nextBoolean())
-            new BarcodeSubset(this, set, true)
-          })
-          case defaultCase =>
-            // forward/backward selection
-            val candidates = stepwiseBarcodeSelection(initialization).sets
-
-            Array.tabulate(numIndividuals)((i: Int) => {
-              val set =
-                if (candidates.length > numIndividuals)
-                // more candidates than required individuals => sample randomly
-                  candidates(Random.nextInt(candidates.length)).asInstanceOf[BarcodeSubset].set
-                else // not more candidates than individuals => take all candidates
-                // and add random individuals if required
-                  if (i < candidates.length)
-                    candidates(i).asInstanceOf[BarcodeSubset].set
-                  else
-                    Array.fill(barcodes.length)(Random.nextBoolean())
-              new BarcodeSubset(this, set, true)
-            })
-        }, crowdingObjectives)
-
-        for (gen <- 1 to numGenerations) {
-
-          if (progress != null)
-            // update progress each generation
-            if (!progress.progress(((run - 1) * numGenerations + gen) * 1.0 / (numGenerations * numRuns) * 100,
-              "Run " + run + "/" + numRuns + " Iteration " + gen + "/" + numGenerations))
-              return null
-
-          // generate offspring in parallel
-          val offspring = ParSeq.range(1, numOffspring / numStreams).flatMap(i => {
-          //val offspring = ParSeq.range(1, numOffspring).flatMap((i) => {
-            val parent1 = individuals.chooseRandom() crowdedComparison individuals.chooseRandom()
-            val parent2 = individuals.chooseRandom() crowdedComparison individuals.chooseRandom()
-
-            // generate two offspring by cross-over of the parents
-            val (offspring1, offspring2) = parent1 recombine parent2
-
-            // mutate offspring
-            offspring1.mutate()
-            offspring2.mutate()
-
-            // calculate fitness of offspring, and add them to the population
-            updateFitness(offspring1)
-            updateFitness(offspring2)
-            Array(offspring1, offspring2)
-          })
-
-          individuals.population ++= offspring.toIndexedSeq
-
-          // determine Pareto fronts, and select the survivors
-          // for the next generation by non-dominated sorting          
-          individuals.nonDominatedSorting(numIndividuals)
-
-          // update fitness map for quick calculation
-          // (cannot be done in parallel)
-          for (ind <- individuals.population)
-            if (!storedFitness.contains(ind.set.deep))
-              storedFitness(ind.set.deep) = ind.fitness
+      val maxDist = dist.maxDist.toDouble
+      val crowdingObjectives = Array(0, 2) zip Array(maxDist, dist.size.toDouble)
+
+      // store the best solutions across all runs and generations in an archive,
+      // which only keeps unique non-dominated solutions
+      val archive = new ParetoArchive[BarcodeSubset]
+
+      // upper bounds for the subset sizes, which are only calculated for early stopping
+      // if colors are not balanced (as there is no bound for the color balance)
+      val sizeBounds = if (balanceColors) null else getSizeBounds
+
+      val completedGenerations = new AtomicInteger(0)
+      val cancelled = new AtomicBoolean(false)
+      val boundsReached = new AtomicBoolean(false)
+
+      // execute the independent runs concurrently
+      ParSeq.range(1, numRuns + 1).foreach(run => {
+        runGA(run, numIndividuals, numOffspring, numRuns, numGenerations, numStreams,
+          initialization, seeds, crowdingObjectives, archive, sizeBounds,
+          completedGenerations, cancelled, boundsReached, progress)
+      })
 
-        }
-        // add best individuals of the run to the result list
-        allSolutions.population ++= individuals.population
+      if (cancelled.get)
+        return null
 
-      }
-
-      // extract the non-dominated solutions from the full result set,
-      // and make it unique by removing duplicates
-      allSolutions.removeFitnessDuplicates(true)
+      if (sizeBounds != null)
+        for (set <- archive.getNonDominated if set.fitness._1 >= 0 && set.fitness._1 < sizeBounds.length)
+          set.sizeBound = sizeBounds(set.fitness._1)
 
       if (balanceColors)
         new BarcodeSetCollection(
-          allSolutions.getNonDominated().sortWith((x1, x2) => x1.fitness._1 > x2.fitness._1 ||
+          archive.getNonDominated.sortWith((x1, x2) => x1.fitness._1 > x2.fitness._1 ||
             (x1.fitness._1 == x2.fitness._1 &&
               x1.fitness._3 < x2.fitness._3)).toArray[BarcodeSet])
       else
-        new BarcodeSetCollection(selectBestSubsetsByMinDist(allSolutions.getNonDominated()).toArray[BarcodeSet]);
+        new BarcodeSetCollection(selectBestSubsetsByMinDist(archive.getNonDominated).toArray[BarcodeSet]);
     }
 
+  /**
+   * Selects the largest possible barcode subset whose members have
+   * at least the specified pairwise distance. This corresponds to a maximum clique
+   * in the compatibility graph, in which two barcodes are adjacent if their distance
+   * is sufficient, and is solved exactly by a parallel branch and bound algorithm
+   * (see MaxCliqueSolver). The runtime grows exponentially in the worst case,
+   * so this is intended for candidate pools of up to a few thousand barcodes.
+   * Locked barcodes are always included, so they must have the required distance
+   * to each other, and only candidates that have the required distance
+   * to all locked barcodes are considered.
+   * @param minDist	The required minimum distance between any two selected barcodes
+   * @param progress	An optional listener that receives the progress of the barcode selection
+   * @return A collection comprising the optimal barcode subset, or null if the selection has been cancelled
+   */
+  def selectBarcodesExact(minDist: Int, progress: BarcodeProgressListener = null): BarcodeSetCollection = {
+    require(lockedMinDist >= minDist, "The locked barcodes have a minimum distance of " + lockedMinDist +
+      ", which is below the required minimum distance of " + minDist + "!")
+
+    // the candidates that are compatible with all locked barcodes
+    val eligible = barcodes.indices.filter(i => lockedDist(i).forall(_ >= minDist)).toArray
+
+    // two barcodes are compatible if their distance is at least minDist
+    val compatible = Array.tabulate(eligible.length)(i => {
+      val neighbours = Bitset.empty(eligible.length)
+      for (j <- eligible.indices if j != i && dist(eligible(i))(eligible(j)) >= minDist)
+        Bitset.set(neighbours, j)
+      neighbours
+    })
+
+    val clique = new MaxCliqueSolver(compatible).solve(progress)
+    if (clique == null)
+      return null
+
+    val bits = Bitset.empty(barcodes.length)
+    for (i <- clique)
+      Bitset.set(bits, eligible(i))
+    new BarcodeSetCollection(Array[BarcodeSet](new BarcodeSubset(this, bits, true)))
+  }
+
 }
\ No newline at end of file
@@ -36,6 +36,36 @@ trait BarcodeSet {
    * @return The copy
    */
   def copy() : BarcodeSet
+
+  /**
+   * A theoretical upper bound for the minimum distance of sets with the same number
+   * of barcodes (see CodeBounds), or Integer.MAX_VALUE if no bound has been determined
+   */
+  var minDistBound : Int = Integer.MAX_VALUE
+
+  /**
+   * A theoretical upper bound for the number of barcodes of sets with the same
+   * minimum distance (see CodeBounds), or Integer.MAX_VALUE if no bound has been determined
+   */
+  var sizeBound : Int = Integer.MAX_VALUE
+
+  /**
+   * Describes the optimality gap of the set with respect to its bounds
+   * @return The description, or an empty string if no bound has been determined
+   */
+  def describeGap : String = {
+    val (value, bound, unit) =
+      if (minDistBound != Integer.MAX_VALUE)
+        (getMinDist, minDistBound, "")
+      else
+        (getNumBarcodes, sizeBound, " barcodes")
+    if (bound == Integer.MAX_VALUE)
+      ""
+    else if (value >= bound)
+      " (optimal)"
+    else
+      " (upper bound " + bound + unit + ", gap " + (bound - value) + ")"
+  }
 }
 
 /**
@@ -88,10 +118,15 @@ trait MOOIndividual[T] extends Individual[T] {
 /**
  * A basic class for storing barcode sets
  * @param	barcodes  The barcodes comprised in the set
+ * @param	minDist	The minimum distance between any two barcodes in the set
  */
-class SimpleBarcodeSet(val barcodes: Array[String]) extends BarcodeSet {
-  // calculate the minimum distance between any two barcodes in the set
-  val minDist: Int = BarcodeDistanceCalculator.getMinDist(barcodes)
+class SimpleBarcodeSet(val barcodes: Array[String], val minDist: Int) extends BarcodeSet {
+
+  /**
+   * Creates a barcode set and calculates its minimum distance
+   * @param	barcodes  The barcodes comprised in the set
+   */
+  def this(barcodes: Array[String]) = this(barcodes, BarcodeDistanceCalculator.getMinDist(barcodes))
 
   def getBarcodes: Array[String] = {
     barcodes
@@ -112,11 +147,14 @@ class SimpleBarcodeSet(val barcodes: Array[String]) extends BarcodeSet {
       else if (barcodes.length == 1)
         "1 barcode"
       else
-        barcodes.length + " barcodes with minimum distance " + minDist
+        barcodes.length + " barcodes with minimum distance " + minDist + describeGap
     }  
 
   def copy(): BarcodeSet = {
-    new SimpleBarcodeSet(barcodes)
+    val set = new SimpleBarcodeSet(barcodes, minDist)
+    set.minDistBound = minDistBound
+    set.sizeBound = sizeBound
+    set
   } 
   
   
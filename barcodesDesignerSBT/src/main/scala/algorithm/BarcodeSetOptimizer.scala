@@ -1,6 +1,8 @@
 package main.code
 package algorithm
 
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger, AtomicLong}
+
 import scala.collection.mutable.ArrayBuffer
 import scala.collection.parallel.immutable.ParSeq
 import scala.util.Random
@@ -63,7 +65,7 @@ class RandomBarcodeSet(val parent : BarcodeSetOptimizer, var barcodes: Array[Arr
    * @param j The index of the second barcode
    * @param d	The new distance
    */
-  private def updateDist(i: Int, j: Int, d: Int): Unit = {
+  private[algorithm] def updateDist(i: Int, j: Int, d: Int): Unit = {
     if (i != j) {      
       val oldDist = dist(i)(j)
 
@@ -130,10 +132,57 @@ class RandomBarcodeSet(val parent : BarcodeSetOptimizer, var barcodes: Array[Arr
    * Updates the fitness of the individual
    */
   def updateFitness(): Unit = {
-    val minDistCounts = getMinDistCounts
-    fitness = (minDists.min,
-      minDistCounts.sum) //
-    fitnessList = List(minDists.min, minDistCounts.sum)
+    fitness = evaluate()
+    fitnessList = List(fitness._1, fitness._2)
+  }
+
+  /**
+   * Determines the minimum distance of the set and the (negative) number of
+   * distances that are equal to the minimum distance
+   * @return A tuple of the minimum distance and the negative minimum distance count
+   */
+  private[algorithm] def evaluate(): (Int, Int) = {
+    var min = Integer.MAX_VALUE
+    for (m <- minDists)
+      if (m < min)
+        min = m
+    var count = 0
+    if (min != Integer.MAX_VALUE)
+      for (row <- distTable)
+        count -= row(min)
+    (min, count)
+  }
+
+  /**
+   * Replaces a nucleotide of a barcode, and updates the distances to all other barcodes.
+   * For the Hamming distance, the distances are updated incrementally,
+   * as only one position changes.
+   * @param idx	The index of the barcode
+   * @param pos	The nucleotide position
+   * @param nuc	The new nucleotide
+   */
+  private[algorithm] def changeNucleotide(idx: Int, pos: Int, nuc: Char): Unit = {
+    val oldNuc = barcodes(idx)(pos)
+    if (oldNuc != nuc) {
+      // copy the barcode, as barcode arrays may be shared with other sets
+      val newBarcode = barcodes(idx).clone()
+      newBarcode(pos) = nuc
+      barcodes(idx) = newBarcode
+
+      for (i <- 0 until barcodes.length) {
+        if (i != idx) {
+          val newDist =
+            if (BarcodeDistanceCalculator.distanceType == 0) {
+              // Hamming distance: only the changed position matters
+              val other = barcodes(i)(pos)
+              dist(idx)(i) + (if (other == oldNuc) 1 else 0) - (if (other == nuc) 1 else 0)
+            }
+            else
+              BarcodeDistanceCalculator.dist(newBarcode, barcodes(i))
+          updateDist(idx, i, newDist)
+        }
+      }
+    }
   }
 
   /**
@@ -147,7 +196,8 @@ class RandomBarcodeSet(val parent : BarcodeSetOptimizer, var barcodes: Array[Arr
       // identify the barcodes that have the maximum number of minimal distances
       // to other barcodes, and choose one randomly
       val minDistCounts = getMinDistCounts
-      var queue = minDists.zip(minDistCounts).zipWithIndex
+      // locked barcodes are never replaced
+      var queue = minDists.zip(minDistCounts).zipWithIndex.drop(parent.numLocked)
       val min = queue.minBy(_._1)._1
       queue = queue.filter(x => x._1 == min)
       val el = queue(Random.nextInt(queue.length))
@@ -244,7 +294,9 @@ class RandomBarcodeSet(val parent : BarcodeSetOptimizer, var barcodes: Array[Arr
   def recombine(that: RandomBarcodeSet): (RandomBarcodeSet, RandomBarcodeSet) = {
     
     // determine the indices of the barcodes that should be exchanged
-    val shuffleIndices = Random.shuffle(0 to barcodes.length - 1).take(Random.nextInt(math.max(1,math.round(barcodes.length * 0.1).toInt)))
+    // (locked barcodes are equal in all individuals)
+    val shuffleIndices = Random.shuffle(parent.numLocked to barcodes.length - 1).take(
+      Random.nextInt(math.max(1,math.round((barcodes.length - parent.numLocked) * 0.1).toInt)))
 
     // create copies of the parents
     val child1 = new RandomBarcodeSet(this)
@@ -301,7 +353,7 @@ class RandomBarcodeSet(val parent : BarcodeSetOptimizer, var barcodes: Array[Arr
       else if (barcodes.length == 1)
         "1 barcode"
       else
-        barcodes.length + " barcodes with minimum distance " + fitness._1;
+        barcodes.length + " barcodes with minimum distance " + fitness._1 + describeGap;
     }
 
 }
@@ -317,19 +369,51 @@ object BarcodeSetOptimizer {
  * A class that optimizes randomly generated sets of barcodes according to their
  * minimum distances
  * @param barcodePattern	A string specifying the fixed and non-fixed nucleotide positions
- * @param numBarcodes	The number of barcodes in the result set
+ * @param numBarcodes	The number of generated barcodes in the result set
  * @param minGC	The minimum fraction of G/C nucleotides in each barcode
  * @param maxGC The maximum fraction of G/C nucleotides in each barcode
  * @param startWithHammingCodes	Specifies whether the algorithm is initialized with 
  * Hamming codes (true) or with randomly generated codes (false)
+ * @param lockedBarcodes	Barcodes that are included in every set without being modified
+ * (e.g. an existing barcode kit that should be extended). They must match the barcode pattern
  */
 class BarcodeSetOptimizer(val barcodePattern: String, val numBarcodes: Int, 
                           val minGC : Double = 0.4, val maxGC : Double = 0.6, 
-                          val startWithHammingCodes : Boolean = true) {
+                          val startWithHammingCodes : Boolean = true,
+                          val lockedBarcodes : Array[String] = new Array[String](0)) {
+
+  /**
+   * Creates an optimizer without locked barcodes
+   * @param barcodePattern	A string specifying the fixed and non-fixed nucleotide positions
+   * @param numBarcodes	The number of barcodes in the result set
+   * @param minGC	The minimum fraction of G/C nucleotides in each barcode
+   * @param maxGC The maximum fraction of G/C nucleotides in each barcode
+   * @param startWithHammingCodes	Specifies whether the algorithm is initialized with
+   * Hamming codes (true) or with randomly generated codes (false)
+   */
+  def this(barcodePattern: String, numBarcodes: Int, minGC : Double, maxGC : Double,
+           startWithHammingCodes : Boolean) =
+    this(barcodePattern, numBarcodes, minGC, maxGC, startWithHammingCodes, new Array[String](0))
 
   //determine the number of non-fixed nucleotides
   val effectiveBarcodeLength: Int = barcodePattern.count(_ == '_')
 
+  // the number of locked barcodes, which occupy the first rows of each set
+  val numLocked: Int = lockedBarcodes.length
+
+  // the locked barcodes without the fixed positions of the pattern
+  val lockedCodes: Array[Array[Char]] = lockedBarcodes.map(barcode => {
+    require(barcode.length == barcodePattern.length &&
+      barcode.indices.forall(i => barcodePattern(i) == '_' || barcodePattern(i).toUpper == barcode(i)),
+      "Locked barcode " + barcode + " does not match the barcode pattern!")
+    barcode.indices.filter(barcodePattern(_) == '_').map(barcode(_)).toArray
+  })
+
+  // an upper bound for the minimum distance of the sets: the analytic bound for the
+  // effective barcode length (see CodeBounds), which is also limited by the locked barcodes
+  val minDistBound: Int = math.min(CodeBounds.maxMinDist(effectiveBarcodeLength, numLocked + numBarcodes),
+    BarcodeDistanceCalculator.getMinDist(lockedCodes.map(_.mkString)))
+
   // determine the number of mutations
   val mutateCount: Int = math.min(100, math.max(1, math.round(numBarcodes * 0.0025).toInt))
 
@@ -348,11 +432,12 @@ class BarcodeSetOptimizer(val barcodePattern: String, val numBarcodes: Int,
    * Finalizes the internal solutions of the algorithm by inserting the fixed nucleotides
    * at the specified position (the algorithm omits these positions)
    * @param solutions	The internal solutions/individuals of the algorithm
-   * @return An array of barcode sets into which the fixed positions have been inserted
+   * @return An array of barcode sets into which the fixed positions have been inserted,
+   * which report their gap to the upper bound for the minimum distance
    */
   private def finalizeSolutions(solutions : Seq[RandomBarcodeSet]) : Array[BarcodeSet] = {
     solutions.map(sol => {
-      new SimpleBarcodeSet(sol.barcodes.map(barcode => {
+      val set = new SimpleBarcodeSet(sol.barcodes.map(barcode => {
         var i = 0
         barcodePattern.map(c => {
           if (c != '_')
@@ -365,12 +450,282 @@ class BarcodeSetOptimizer(val barcodePattern: String, val numBarcodes: Int,
           }            
         })
       }))
+      set.minDistBound = minDistBound
+      set
     }).toArray
   }
   
+  /**
+   * Performs a single run of the Genetic Algorithm
+   * @param run	The number of the run (for progress messages)
+   * @param numIndividuals	The population size for the GA
+   * @param numOffspring		The number of offspring in each generation of the GA
+   * @param numRuns					The total number of independent GA runs
+   * @param numGenerations	The number of generations for which the GA is run
+   * @param earlyStoppingMinDist	The minimum distance at which the run terminates
+   * @param numStreams	The number of parallel streams for recombination, mutation and evaluation
+   * @param seeds	Barcode sets (including the locked barcodes) that are included in the
+   * initial population before the remaining individuals are generated
+   * @param completedGenerations	A counter of the generations completed by all concurrent runs
+   * @param cancelled	A flag shared by all concurrent runs that is set when the user cancels the optimization
+   * @param progress	An optional listener that receives the progress of the barcode optimization
+   * @return The final population of the run, sorted by fitness, or null if the optimization has been cancelled
+   */
+  private def runGA(run: Int, numIndividuals: Int, numOffspring: Int, numRuns: Int, numGenerations: Int,
+                    earlyStoppingMinDist: Int, numStreams: Int, seeds: Array[Array[Array[Char]]],
+                    completedGenerations: AtomicInteger, cancelled: AtomicBoolean,
+                    progress: BarcodeProgressListener): ArrayBuffer[RandomBarcodeSet] = {
+    if (!BarcodeProgressListener.report(progress,
+      completedGenerations.get * 1.0 / (numGenerations * numRuns) * 100, "Run " + run + "/" + numRuns + " Initializing..."))
+      cancelled.set(true)
+    if (cancelled.get)
+      return null
+
+    val init = new BarcodeGenerator(Array.fill(effectiveBarcodeLength)('_').mkString(""), minGC, maxGC, null)
+
+    // initialize population with the seeds and by generating random barcode sets or sets of Hamming codes
+    var individuals = new ArrayBuffer[RandomBarcodeSet]() ++ Array.tabulate(numIndividuals)((i: Int) => {
+      val barcodes =
+        if (i < seeds.length)
+          seeds(i).clone()
+        else
+          lockedCodes ++ init.generateBarcodes(numBarcodes, 1000, startWithHammingCodes).map(_.toArray)
+      new RandomBarcodeSet(this, barcodes, true)
+    })
+
+    var gen = 0
+
+    do {
+      // iterate over generations
+      gen += 1
+      // update progress each generation
+      if (!BarcodeProgressListener.report(progress,
+        completedGenerations.incrementAndGet() * 1.0 / (numGenerations * numRuns) * 100,
+        "Run " + run + "/" + numRuns + " Iteration " + gen + "/" + numGenerations + " Dist " + individuals(0).getMinDist +
+          " DistCount " + individuals(0).fitness._2))
+        cancelled.set(true)
+
+      // generate offspring in parallel
+      val offspring = ParSeq.range(1, numOffspring / numStreams).flatMap(i => {
+
+        // determine parents by tournament selection among three random individuals
+        val parent1 = tournament(individuals)
+        val parent2 = tournament(individuals)
+
+        // generate two offspring either by cross-over of the parents
+        // or by copying the parents
+        val (offspring1, offspring2) =
+          if (Random.nextBoolean())
+            parent1 recombine parent2
+          else
+            (new RandomBarcodeSet(parent1), new RandomBarcodeSet(parent2))
+
+        // mutate offspring
+        offspring1.mutate()
+        offspring2.mutate()
+
+        // calculate fitness of offspring, and add them to the population
+        offspring1.updateFitness()
+        offspring2.updateFitness()
+        Array(offspring1, offspring2)
+      })
+
+      // merge parents and offspring, and keep the best <numIndividuals> candidates
+      individuals ++= offspring.toIndexedSeq
+      individuals = individuals.sorted(Ordering.by((_: RandomBarcodeSet).fitness).reverse).take(numIndividuals)
+    }
+    // terminate if maximum number of generations has been reached, if the
+    // minimum distance matches the early stopping criterion or the upper bound,
+    // or if the user cancelled
+    while (gen <= numGenerations && individuals(0).getMinDist < math.min(earlyStoppingMinDist, minDistBound) &&
+      !cancelled.get)
+
+    if (cancelled.get)
+      null
+    else
+      individuals
+  }
+
+  /**
+   * Performs a single run of the simulated annealing
+   * @param run	The number of the run (for progress messages)
+   * @param numRuns	The total number of independent runs
+   * @param numIterations	The number of moves for which the annealing is run
+   * @param earlyStoppingMinDist	The minimum distance at which the run terminates
+   * @param startTemperature	The initial temperature
+   * @param endTemperature	The final temperature
+   * @param completedIterations	A counter of the moves completed by all concurrent runs
+   * @param cancelled	A flag shared by all concurrent runs that is set when the user cancels the optimization
+   * @param progress	An optional listener that receives the progress of the barcode optimization
+   * @return The best barcode set of the run, or null if the optimization has been cancelled
+   */
+  private def runSA(run: Int, numRuns: Int, numIterations: Int, earlyStoppingMinDist: Int,
+                    startTemperature: Double, endTemperature: Double,
+                    completedIterations: AtomicLong, cancelled: AtomicBoolean,
+                    progress: BarcodeProgressListener): RandomBarcodeSet = {
+    if (!BarcodeProgressListener.report(progress,
+      completedIterations.get * 1.0 / (numIterations.toLong * numRuns) * 100, "Run " + run + "/" + numRuns + " Initializing..."))
+      cancelled.set(true)
+    if (cancelled.get)
+      return null
+
+    val init = new BarcodeGenerator(Array.fill(effectiveBarcodeLength)('_').mkString(""), minGC, maxGC, null)
+    val current = new RandomBarcodeSet(this,
+      lockedCodes ++ init.generateBarcodes(numBarcodes, 1000, startWithHammingCodes).map(_.toArray), true)
+
+    // the energy weights the minimum distance above all possible minimum distance counts,
+    // such that the annealing optimizes the fitness lexicographically
+    val setSize = numLocked + numBarcodes
+    val distWeight = setSize.toDouble * setSize
+    def energy(fitness: (Int, Int)): Double = -fitness._1 * distWeight - fitness._2
+
+    var currentFitness = current.fitness
+    var bestFitness = currentFitness
+    var bestBarcodes = current.barcodes.clone()
+
+    // report progress in 1000 steps
+    val reportInterval = math.max(1, numIterations / 1000)
+    val cooling = math.log(endTemperature / startTemperature)
+    val length = current.barcodes(0).length
+
+    var it = 0
+    while (it < numIterations && bestFitness._1 < math.min(earlyStoppingMinDist, minDistBound) && !cancelled.get) {
+      it += 1
+      val temperature = startTemperature * math.exp(cooling * it / numIterations)
+
+      // choose a barcode with the minimum distance, or a random barcode
+      // (among the barcodes that are not locked)
+      val idx = if (Random.nextBoolean()) {
+        var i = Random.nextInt(numBarcodes)
+        var steps = 0
+        // the minimum distance may only occur among the locked barcodes
+        while (current.minDists(numLocked + i) != currentFitness._1 && steps < numBarcodes) {
+          i = (i + 1) % numBarcodes
+          steps += 1
+        }
+        numLocked + i
+      } else
+        numLocked + Random.nextInt(numBarcodes)
+
+      // change one random position, preserving the G/C content if
+      // a different nucleotide violates the G/C range
+      val pos = Random.nextInt(length)
+      val oldNuc = current.barcodes(idx)(pos)
+      var newNuc = BarcodeSetOptimizer.nucleotides((BarcodeSetOptimizer.nucleotides.indexOf(oldNuc) +
+        Random.nextInt(3) + 1) % 4)
+      val GCCount = current.barcodes(idx).count(x => x == 'G' || x == 'C') +
+        (if (newNuc == 'G' || newNuc == 'C') 1 else 0) - (if (oldNuc == 'G' || oldNuc == 'C') 1 else 0)
+      if (GCCount * 1.0 / length < minGC || GCCount * 1.0 / length > maxGC)
+        newNuc = oldNuc match {
+          case 'A' => 'T'
+          case 'T' => 'A'
+          case 'C' => 'G'
+          case _ => 'C'
+        }
+
+      current.changeNucleotide(idx, pos, newNuc)
+      val newFitness = current.evaluate()
+
+      val delta = energy(newFitness) - energy(currentFitness)
+      if (delta <= 0 || Random.nextDouble() < math.exp(-delta / temperature)) {
+        // accept the move
+        currentFitness = newFitness
+        if (Ordering[(Int, Int)].gt(currentFitness, bestFitness)) {
+          bestFitness = currentFitness
+          bestBarcodes = current.barcodes.clone()
+        }
+      } else
+        // reject the move
+        current.changeNucleotide(idx, pos, oldNuc)
+
+      if (it % reportInterval == 0)
+        if (!BarcodeProgressListener.report(progress,
+          completedIterations.addAndGet(reportInterval) * 1.0 / (numIterations.toLong * numRuns) * 100,
+          "Run " + run + "/" + numRuns + " Iteration " + it + "/" + numIterations + " Dist " + bestFitness._1 +
+            " DistCount " + bestFitness._2))
+          cancelled.set(true)
+    }
+
+    if (cancelled.get)
+      null
+    else
+      new RandomBarcodeSet(this, bestBarcodes, true)
+  }
+
+  /**
+   * Optimizes a randomly generated set of barcodes according to its
+   * minimum distance by simulated annealing. In contrast to the Genetic Algorithm,
+   * a single set is modified by changing one nucleotide at a time.
+   * Like the Genetic Algorithm, a run terminates early if it reaches the upper bound minDistBound.
+   * The independent runs are executed concurrently.
+   * @param numRuns	The number of independent runs
+   * @param numIterations	The number of moves in each run
+   * @param earlyStoppingMinDist	The minimum distance at which the algorithm terminates
+   * (or Integer.MAX_INT to disable early stopping)
+   * @param startTemperature	The initial temperature (in units of minimum distance counts)
+   * @param endTemperature	The final temperature (in units of minimum distance counts)
+   * @param progress	An optional listener that receives the progress of the barcode optimization
+   */
+  def annealBarcodeSets(numRuns: Int = 1, numIterations: Int = 200000,
+                        earlyStoppingMinDist: Int = Integer.MAX_VALUE,
+                        startTemperature: Double = 2.0, endTemperature: Double = 0.05,
+                        progress: BarcodeProgressListener = null): BarcodeSetCollection =
+    {
+      // store the best solutions across all runs in a separate object
+      val allSolutions = new ArrayBuffer[RandomBarcodeSet]()
+
+      val completedIterations = new AtomicLong(0)
+      val cancelled = new AtomicBoolean(false)
+
+      // execute the independent runs concurrently
+      ParSeq.range(1, numRuns + 1).foreach(run => {
+        val best = runSA(run, numRuns, numIterations, earlyStoppingMinDist,
+          startTemperature, endTemperature, completedIterations, cancelled, progress)
+
+        if (best != null)
+          allSolutions.synchronized {
+            allSolutions += best
+          }
+      })
+
+      if (cancelled.get)
+        return null
+
+      // extract the best set across all runs, and post-process it by inserting
+      // the fixed nucleotides into the barcodes
+      new BarcodeSetCollection(finalizeSolutions(
+        allSolutions.sorted(Ordering.by((_: RandomBarcodeSet).fitness).reverse).take(1)))
+    }
+
+  /**
+   * Converts barcode sets (e.g. of a previous result) into initial sets of the optimization.
+   * Barcodes that do not match the barcode pattern or that are locked are skipped,
+   * and the sets are cut or filled with generated barcodes to the required size
+   * @param sets	The barcode sets
+   * @return The sets without the fixed positions of the pattern, starting with the locked barcodes
+   */
+  def mapToPattern(sets: Array[BarcodeSet]): Array[Array[Array[Char]]] = {
+    val init = new BarcodeGenerator(Array.fill(effectiveBarcodeLength)('_').mkString(""), minGC, maxGC, null)
+    val lockedSet = lockedCodes.map(_.mkString).toSet
+    sets.map(set => {
+      val codes = set.getBarcodes.map(_.toUpperCase).filter(barcode =>
+        barcode.length == barcodePattern.length &&
+          barcode.indices.forall(i => barcodePattern(i) == '_' || barcodePattern(i).toUpper == barcode(i)))
+        .map(barcode => barcode.indices.filter(barcodePattern(_) == '_').map(barcode(_)).mkString)
+        .filter(!lockedSet.contains(_))
+        .distinct.take(numBarcodes)
+      val missing = numBarcodes - codes.length
+      lockedCodes ++ codes.map(_.toArray) ++
+        (if (missing > 0) init.generateBarcodes(missing, 1000, startWithHammingCodes).map(_.toArray)
+        else new Array[Array[Char]](0))
+    })
+  }
+
   /**
    * Selects barcode sets with maximum pairwise distances between the members
-   * according to a Genetic Algorithm
+   * according to a Genetic Algorithm.
+   * The independent runs are executed concurrently, and each run terminates early
+   * if its best set reaches the upper bound minDistBound.
    * @param numIndividuals	The population size for the GA
    * @param numOffspring		The number of offspring in each generation of the GA
    * @param numRuns					The number of independent GA runs
@@ -378,80 +733,44 @@ class BarcodeSetOptimizer(val barcodePattern: String, val numBarcodes: Int,
    * @param earlyStoppingMinDist	The minimum distance at which the algorithm terminates
 	 * (or Integer.MAX_INT to disable early stopping)
    * @param progress	An optional listener that receives the progress of the barcode optimization
+   * @param initFile	An optional BarcodeDesigner JSON file with sets that seed the population, or null
    */
   def optimizeBarcodeSets(numIndividuals: Int = 100, numOffspring: Int = 200,
     numRuns: Int = 1, numGenerations: Int = 1000, earlyStoppingMinDist: Int = Integer.MAX_VALUE,
-                          numStreams: Int = 4, progress: BarcodeProgressListener = null): BarcodeSetCollection =
+                          numStreams: Int = 4, progress: BarcodeProgressListener = null,
+                          initFile: String = null): BarcodeSetCollection =
     {
+      val seeds =
+        if (initFile == null)
+          new Array[Array[Array[Char]]](0)
+        else
+          mapToPattern(new BarcodeSetCollection(initFile).sets)
 
       // store the best solutions across all runs in a separate object
       val allSolutions = new ArrayBuffer[RandomBarcodeSet]()
 
-      for (run <- 1 to numRuns) {
-        if (progress != null)
-          // update progress
-          if (!progress.progress(((run - 1) * numGenerations) * 1.0 / (numGenerations * numRuns) * 100,
-            "Initializing..."))
-            return null
-        val init = new BarcodeGenerator(Array.fill(effectiveBarcodeLength)('_').mkString(""), minGC, maxGC, null)
-
-        // initialize population by generating random barcode sets or sets of Hamming codes
-        var individuals = new ArrayBuffer[RandomBarcodeSet]() ++ Array.tabulate(numIndividuals)((i: Int) => {
-          val barcodes = init.generateBarcodes(numBarcodes, 1000, startWithHammingCodes).map(_.toArray)
-          new RandomBarcodeSet(this, barcodes, true)
-        })
+      val completedGenerations = new AtomicInteger(0)
+      val cancelled = new AtomicBoolean(false)
+
+      // execute the independent runs concurrently
+      ParSeq.range(1, numRuns + 1).foreach(run => {
+        val individuals = runGA(run, numIndividuals, numOffspring, numRuns, numGenerations,
+          earlyStoppingMinDist, numStreams, seeds, completedGenerations, cancelled, progress)
 
-        var gen = 0
-
-        do {
-          // iterate over generations
-          gen += 1
-          if (progress != null)
-            // update progress each generation
-            if (!progress.progress(((run - 1) * numGenerations + gen) * 1.0 / (numGenerations * numRuns) * 100,
-              "Run " + run + "/" + numRuns + " Iteration " + gen + "/" + numGenerations + " Dist " + individuals(0).getMinDist +
-                " DistCount " + individuals(0).fitness._2))
-              return null
-          // generate offspring in parallel
-          val offspring = ParSeq.range(1, numOffspring / numStreams).flatMap(i => {
-
-            // determine parents by tournament selection among three random individuals
-            val parent1 = tournament(individuals)
-            val parent2 = tournament(individuals)
-
-            // generate two offspring either by cross-over of the parents
-            // or by copying the parents
-            val (offspring1, offspring2) =
-              if (Random.nextBoolean())
-                parent1 recombine parent2
-              else
-                (new RandomBarcodeSet(parent1), new RandomBarcodeSet(parent2))
-
-            // mutate offspring
-            offspring1.mutate()
-            offspring2.mutate()
-
-            // calculate fitness of offspring, and add them to the population
-            offspring1.updateFitness()
-            offspring2.updateFitness()
-            Array(offspring1, offspring2)
-          })
-
-          // merge parents and offspring, and keep the best <numIndividuals> candidates
-          individuals ++= offspring.toIndexedSeq
-          individuals = individuals.sorted(Ordering.by((_: RandomBarcodeSet).fitness).reverse).take(numIndividuals)
-        }
-        // terminate if maximum number of generations has been reached or
-        // if the minimum distance matches the early stopping criterion
-        while (gen <= numGenerations && individuals(0).getMinDist < earlyStoppingMinDist)
         // add best individuals of the run to the result list
-        allSolutions ++= individuals
+        if (individuals != null)
+          allSolutions.synchronized {
+            allSolutions ++= individuals
+          }
+      })
 
-      }
-      
-      // extract the best individual, and post-process it by inserting 
-      // the fixed nucleotides into the barcodes      
-      new BarcodeSetCollection(finalizeSolutions(allSolutions.take(1)))
+      if (cancelled.get)
+        return null
+
+      // extract the best individual across all runs, and post-process it by inserting
+      // the fixed nucleotides into the barcodes
+      new BarcodeSetCollection(finalizeSolutions(
+        allSolutions.sorted(Ordering.by((_: RandomBarcodeSet).fitness).reverse).take(1)))
     }
 
 }
\ No newline at end of file
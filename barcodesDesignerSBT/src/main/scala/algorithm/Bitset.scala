@@ -0,0 +1,175 @@
+package main.code
+package algorithm
+
+import scala.util.Random
+
+/**
+ * Static methods operating on bit sets that are stored as arrays of 64-bit words.
+ * Bit i is stored in word i / 64 at position i % 64. Bits beyond the
+ * number of elements are always cleared.
+ */
+object Bitset {
+
+  /**
+   * Determines the number of words needed to store a bit set
+   * @param n	The number of elements
+   * @return The number of 64-bit words
+   */
+  def numWords(n: Int): Int = (n + 63) >>> 6
+
+  /**
+   * Creates an empty bit set
+   * @param n	The number of elements
+   * @return A bit set in which no bit is set
+   */
+  def empty(n: Int): Array[Long] = new Array[Long](numWords(n))
+
+  /**
+   * Creates a bit set in which all bits are set
+   * @param n	The number of elements
+   * @return A bit set in which all n bits are set
+   */
+  def full(n: Int): Array[Long] = {
+    val bits = Array.fill(numWords(n))(-1L)
+    clearTail(bits, n)
+    bits
+  }
+
+  /**
+   * Creates a bit set in which each bit is set with a probability of 0.5
+   * @param n	The number of elements
+   * @return A random bit set
+   */
+  def random(n: Int): Array[Long] = {
+    val bits = Array.fill(numWords(n))(Random.nextLong())
+    clearTail(bits, n)
+    bits
+  }
+
+  /**
+   * Converts a Boolean vector into a bit set
+   * @param set	The Boolean vector
+   * @return The bit set
+   */
+  def fromBooleans(set: Array[Boolean]): Array[Long] = {
+    val bits = empty(set.length)
+    for (i <- set.indices if set(i))
+      bits(i >>> 6) |= 1L << (i & 63)
+    bits
+  }
+
+  /**
+   * Clears all bits beyond the number of elements
+   * @param bits	The bit set
+   * @param n	The number of elements
+   */
+  private def clearTail(bits: Array[Long], n: Int): Unit = {
+    if ((n & 63) != 0)
+      bits(bits.length - 1) &= (1L << (n & 63)) - 1
+  }
+
+  /**
+   * Checks whether a bit is set
+   * @param bits	The bit set
+   * @param i	The index of the bit
+   * @return true if the bit is set, false otherwise
+   */
+  @inline def get(bits: Array[Long], i: Int): Boolean = (bits(i >>> 6) & (1L << (i & 63))) != 0
+
+  /**
+   * Sets a bit
+   * @param bits	The bit set
+   * @param i	The index of the bit
+   */
+  @inline def set(bits: Array[Long], i: Int): Unit = bits(i >>> 6) |= 1L << (i & 63)
+
+  /**
+   * Clears a bit
+   * @param bits	The bit set
+   * @param i	The index of the bit
+   */
+  @inline def clear(bits: Array[Long], i: Int): Unit = bits(i >>> 6) &= ~(1L << (i & 63))
+
+  /**
+   * Counts the set bits
+   * @param bits	The bit set
+   * @return The number of set bits
+   */
+  def cardinality(bits: Array[Long]): Int = {
+    var count = 0
+    var w = 0
+    while (w < bits.length) {
+      count += java.lang.Long.bitCount(bits(w))
+      w += 1
+    }
+    count
+  }
+
+  /**
+   * Finds the next set bit
+   * @param bits	The bit set
+   * @param from	The index at which the search starts (inclusive)
+   * @return The index of the next set bit, or -1 if there is none
+   */
+  def nextSetBit(bits: Array[Long], from: Int): Int = {
+    var w = from >>> 6
+    if (w >= bits.length)
+      return -1
+    var word = bits(w) & (-1L << (from & 63))
+    while (word == 0) {
+      w += 1
+      if (w == bits.length)
+        return -1
+      word = bits(w)
+    }
+    (w << 6) + java.lang.Long.numberOfTrailingZeros(word)
+  }
+
+  /**
+   * Determines the symmetric difference of two bit sets
+   * @param a	The first bit set
+   * @param b	The second bit set
+   * @return A bit set in which exactly the bits that differ between a and b are set
+   */
+  def xor(a: Array[Long], b: Array[Long]): Array[Long] = {
+    val result = new Array[Long](a.length)
+    for (w <- a.indices)
+      result(w) = a(w) ^ b(w)
+    result
+  }
+
+  /**
+   * Lists the indices of all set bits
+   * @param bits	The bit set
+   * @return An ascending array of the indices of the set bits
+   */
+  def toIndices(bits: Array[Long]): Array[Int] = {
+    val result = new Array[Int](cardinality(bits))
+    var i = nextSetBit(bits, 0)
+    var k = 0
+    while (i >= 0) {
+      result(k) = i
+      k += 1
+      i = nextSetBit(bits, i + 1)
+    }
+    result
+  }
+
+  /**
+   * Performs a one-point cross-over of two bit sets at word level
+   * @param head	The bit set that provides the bits up to the split point
+   * @param tail	The bit set that provides the bits after the split point
+   * @param splitPoint	The index of the last bit taken from the head
+   * @return The combined bit set
+   */
+  def crossover(head: Array[Long], tail: Array[Long], splitPoint: Int): Array[Long] = {
+    val result = tail.clone()
+    val w = splitPoint >>> 6
+    // copy all complete words of the head
+    System.arraycopy(head, 0, result, 0, w)
+    // combine the word that contains the split point
+    val mask = if ((splitPoint & 63) == 63) -1L else (1L << ((splitPoint & 63) + 1)) - 1
+    result(w) = (head(w) & mask) | (tail(w) & ~mask)
+    result
+  }
+}
@@ -0,0 +1,115 @@
+package main.code
+package algorithm
+
+import scala.util.Random
+
+/**
+ * A priority queue for barcode indices with small integer keys
+ * (such as minimum distances). Each key has its own bucket,
+ * so that insertions, removals and key changes take constant time.
+ * Elements with the same key are retrieved in random order.
+ * @param n	The number of barcodes, i.e. the indices range from 0 to n - 1
+ * @param maxKey	The largest key. Larger keys are stored in the bucket of maxKey
+ */
+class BucketQueue(n: Int, maxKey: Int) {
+
+  // the elements of each bucket (only the first bucketSizes(k) entries are valid)
+  private val buckets = Array.fill(maxKey + 1)(new Array[Int](4))
+  private val bucketSizes = new Array[Int](maxKey + 1)
+  // the bucket of each element, or -1 if the element is not in the queue
+  private val keys = Array.fill(n)(-1)
+  // the position of each element in its bucket
+  private val positions = new Array[Int](n)
+
+  private var count = 0
+
+  /**
+   * @return true if the queue does not contain any elements
+   */
+  def isEmpty: Boolean = count == 0
+
+  /**
+   * Checks whether an element is in the queue
+   * @param i	The element
+   * @return true if the element is in the queue
+   */
+  def contains(i: Int): Boolean = keys(i) >= 0
+
+  /**
+   * Inserts an element into the queue
+   * @param i	The element
+   * @param key	The key of the element
+   */
+  def insert(i: Int, key: Int): Unit = {
+    val k = math.min(key, maxKey)
+    if (bucketSizes(k) == buckets(k).length)
+      buckets(k) = java.util.Arrays.copyOf(buckets(k), buckets(k).length * 2)
+    buckets(k)(bucketSizes(k)) = i
+    positions(i) = bucketSizes(k)
+    bucketSizes(k) += 1
+    keys(i) = k
+    count += 1
+  }
+
+  /**
+   * Removes an element from the queue
+   * @param i	The element
+   */
+  def remove(i: Int): Unit = {
+    val k = keys(i)
+    if (k >= 0) {
+      // move the last element of the bucket to the position of the removed element
+      val last = buckets(k)(bucketSizes(k) - 1)
+      buckets(k)(positions(i)) = last
+      positions(last) = positions(i)
+      bucketSizes(k) -= 1
+      keys(i) = -1
+      count -= 1
+    }
+  }
+
+  /**
+   * Changes the key of an element if it is in the queue
+   * @param i	The element
+   * @param key	The new key of the element
+   */
+  def update(i: Int, key: Int): Unit = {
+    if (keys(i) >= 0 && keys(i) != math.min(key, maxKey)) {
+      remove(i)
+      insert(i, key)
+    }
+  }
+
+  /**
+   * Removes and returns a random element from a bucket
+   * @param k	The bucket
+   * @return The element
+   */
+  private def pollBucket(k: Int): Int = {
+    val i = buckets(k)(Random.nextInt(bucketSizes(k)))
+    remove(i)
+    i
+  }
+
+  /**
+   * Removes and returns a random element with the largest key
+   * @return The element, or -1 if the queue is empty
+   */
+  def pollMax(): Int = {
+    var k = maxKey
+    while (k >= 0 && bucketSizes(k) == 0)
+      k -= 1
+    if (k < 0) -1 else pollBucket(k)
+  }
+
+  /**
+   * Removes and returns a random element with the smallest key
+   * @return The element, or -1 if the queue is empty
+   */
+  def pollMin(): Int = {
+    var k = 0
+    while (k <= maxKey && bucketSizes(k) == 0)
+      k += 1
+    if (k > maxKey) -1 else pollBucket(k)
+  }
+}
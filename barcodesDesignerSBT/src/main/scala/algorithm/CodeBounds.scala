@@ -0,0 +1,148 @@
+package main.code
+package algorithm
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Theoretical upper bounds for barcode sets, which certify that a solution is optimal
+ * and reveal impossible combinations of set size and minimum distance.
+ * The analytic bounds of coding theory (Hamming, Singleton and Plotkin bound) limit the number
+ * of barcodes of a given length and minimum Hamming distance over the four nucleotides.
+ * As the Levenshtein distance of two barcodes of the same length does not exceed
+ * their Hamming distance, the bounds also hold for the Levenshtein distance.
+ * The clique cover bound limits the number of barcodes that can be selected from a given pool.
+ */
+object CodeBounds {
+
+  // the number of nucleotides
+  val alphabetSize = 4
+
+  private val q = BigInt(alphabetSize)
+
+  /**
+   * Calculates the Hamming (sphere-packing) bound, as the spheres with radius (minDist - 1) / 2
+   * around the barcodes of a set must be disjoint
+   * @param length	The number of (variable) positions of the barcodes
+   * @param minDist	The minimum distance between any two barcodes
+   * @return The maximum number of barcodes
+   */
+  def hammingBound(length: Int, minDist: Int): BigInt = {
+    val radius = math.max(0, (minDist - 1) / 2)
+    var sphere = BigInt(0)
+    var binomial = BigInt(1)
+    for (i <- 0 to math.min(radius, length)) {
+      sphere += binomial * (q - 1).pow(i)
+      binomial = binomial * (length - i) / (i + 1)
+    }
+    q.pow(length) / sphere
+  }
+
+  /**
+   * Calculates the Singleton bound, as the barcodes of a set must still be different
+   * after removing minDist - 1 positions
+   * @param length	The number of (variable) positions of the barcodes
+   * @param minDist	The minimum distance between any two barcodes
+   * @return The maximum number of barcodes
+   */
+  def singletonBound(length: Int, minDist: Int): BigInt =
+    q.pow(math.max(0, length - math.max(1, minDist) + 1))
+
+  /**
+   * Calculates the Plotkin bound, which is strong for large distances. For
+   * minDist > theta * length with theta = 1 - 1/4, there are at most minDist / (minDist - theta * length)
+   * barcodes. For smaller distances, the bound is applied to the barcodes shortened to the largest
+   * length m with minDist > theta * m, and multiplied by the 4^(length - m) possible prefixes
+   * @param length	The number of (variable) positions of the barcodes
+   * @param minDist	The minimum distance between any two barcodes
+   * @return The maximum number of barcodes
+   */
+  def plotkinBound(length: Int, minDist: Int): BigInt = {
+    if (minDist < 1)
+      return q.pow(length)
+    // theta * m < minDist  <=>  (q - 1) * m < q * minDist
+    val m = math.min(length, (alphabetSize * minDist - 1) / (alphabetSize - 1))
+    q.pow(length - m) * (alphabetSize * minDist / (alphabetSize * minDist - (alphabetSize - 1) * m))
+  }
+
+  /**
+   * Determines an upper bound for the number of barcodes with a given length and minimum distance
+   * @param length	The number of (variable) positions of the barcodes
+   * @param minDist	The minimum distance between any two barcodes
+   * @return The smallest of the Hamming, Singleton and Plotkin bounds
+   */
+  def maxNumBarcodes(length: Int, minDist: Int): BigInt =
+    if (minDist > length)
+      BigInt(1)
+    else
+      hammingBound(length, minDist) min singletonBound(length, minDist) min plotkinBound(length, minDist)
+
+  /**
+   * Determines an upper bound for the minimum distance of a set with a given number of barcodes
+   * @param length	The number of (variable) positions of the barcodes
+   * @param numBarcodes	The number of barcodes in the set
+   * @return The largest minimum distance that is not ruled out by the analytic bounds
+   * (0 if there are more barcodes than possible sequences, Integer.MAX_VALUE for less than two barcodes)
+   */
+  def maxMinDist(length: Int, numBarcodes: Int): Int = {
+    if (numBarcodes < 2)
+      return Integer.MAX_VALUE
+    // the bounds decrease with the minimum distance
+    var minDist = length
+    while (minDist > 0 && maxNumBarcodes(length, minDist) < numBarcodes)
+      minDist -= 1
+    minDist
+  }
+
+  /**
+   * Determines the number of cliques of a greedy clique cover of the conflict graph
+   * of a barcode pool, in which two barcodes are adjacent if their distance is below
+   * the minimum distance. A set with the minimum distance comprises at most one barcode
+   * of each clique, so that the number of cliques is an upper bound for its size.
+   * Each barcode joins the first clique whose members all conflict with it, which is found
+   * by counting its conflicting predecessors per clique, so that each pair is examined once
+   * @param candidates	The indices of the barcodes in the pool
+   * @param minDist	The minimum distance between any two selected barcodes
+   * @param row	A function that returns the distances of a barcode to all barcodes of the pool
+   * @return The number of cliques
+   */
+  def cliqueCover(candidates: Array[Int], minDist: Int, row: Int => Array[Int]): Int = {
+    val n = candidates.length
+    // the clique of each candidate and the size of each clique
+    val cliqueOf = new Array[Int](n)
+    val sizes = new ArrayBuffer[Int]
+    // the number of conflicting predecessors of the current candidate in each clique,
+    // and the cliques with a non-zero count
+    val counts = new Array[Int](n)
+    val touched = new Array[Int](n)
+    for (i <- 0 until n) {
+      val dists = row(candidates(i))
+      var numTouched = 0
+      var j = 0
+      while (j < i) {
+        if (dists(candidates(j)) < minDist) {
+          val c = cliqueOf(j)
+          if (counts(c) == 0) {
+            touched(numTouched) = c
+            numTouched += 1
+          }
+          counts(c) += 1
+        }
+        j += 1
+      }
+      var clique = -1
+      for (k <- 0 until numTouched) {
+        val c = touched(k)
+        if (counts(c) == sizes(c) && (clique < 0 || c < clique))
+          clique = c
+        counts(c) = 0
+      }
+      if (clique < 0) {
+        clique = sizes.size
+        sizes += 0
+      }
+      cliqueOf(i) = clique
+      sizes(clique) += 1
+    }
+    sizes.size
+  }
+}
@@ -0,0 +1,273 @@
+package main.code
+package algorithm
+
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+import scala.collection.parallel.mutable.ParArray
+
+/**
+ * A symmetric matrix of the pairwise distances between the barcodes of a pool,
+ * where the distance of a barcode to itself is Integer.MAX_VALUE
+ */
+trait DistanceMatrix {
+
+  /**
+   * Gets the number of barcodes
+   * @return The number of rows (and columns) of the matrix
+   */
+  def size: Int
+
+  /**
+   * Gets the distances of a barcode to all barcodes. The row must not be modified
+   * @param i	The index of the barcode
+   * @return The row of the matrix
+   */
+  def apply(i: Int): Array[Int]
+
+  /**
+   * Gets the distance between two barcodes
+   * @param i	The index of the first barcode
+   * @param j	The index of the second barcode
+   * @return The distance
+   */
+  def apply(i: Int, j: Int): Int
+
+  /**
+   * Gets a value that is at least as large as all distances
+   * (except for the diagonal), used for normalization
+   * @return The maximum distance or an upper bound for it
+   */
+  def maxDist: Int
+
+  /**
+   * Specifies whether all rows are stored, so that accessing any row is cheap
+   * @return true if no rows are calculated on demand, false otherwise
+   */
+  def storesAllRows: Boolean
+
+  /**
+   * Creates the matrix of an extended barcode pool
+   * (after which this matrix must no longer be used)
+   * @param barcodes	The barcodes of this matrix followed by the new barcodes
+   * @return The extended matrix
+   */
+  def extend(barcodes: Array[String]): DistanceMatrix
+}
+
+/**
+ * A distance matrix that stores all distances
+ * @param rows	The rows of the matrix
+ */
+class DenseDistanceMatrix(private var rows: Array[Array[Int]]) extends DistanceMatrix {
+
+  def size: Int = rows.length
+
+  def apply(i: Int): Array[Int] = rows(i)
+
+  def apply(i: Int, j: Int): Int = rows(i)(j)
+
+  def storesAllRows: Boolean = true
+
+  def maxDist: Int = {
+    var max = 0
+    for (row <- rows; d <- row if d != Integer.MAX_VALUE && d > max)
+      max = d
+    max
+  }
+
+  def extend(barcodes: Array[String]): DistanceMatrix = {
+    val n = rows.length
+    val m = barcodes.length - n
+
+    // the distances between the existing and the new barcodes
+    val cross = BarcodeDistanceCalculator.getCrossDists(barcodes.take(n), barcodes.drop(n))
+    val newDist = BarcodeDistanceCalculator.getBarcodeDists(barcodes.drop(n))
+
+    // append the new columns to the existing rows, and the new rows
+    val extendedRows = ParArray.tabulate(n)(i => {
+      val row = java.util.Arrays.copyOf(rows(i), n + m)
+      System.arraycopy(cross(i), 0, row, n, m)
+      // release the old row early to limit the peak memory
+      rows(i) = null
+      row
+    }).toArray
+    val newRows = Array.tabulate(m)(j => {
+      val row = new Array[Int](n + m)
+      for (i <- 0 until n)
+        row(i) = cross(i)(j)
+      System.arraycopy(newDist(j), 0, row, n, m)
+      row
+    })
+    rows = null
+    new DenseDistanceMatrix(extendedRows ++ newRows)
+  }
+}
+
+/**
+ * A distance matrix that calculates its rows on first access and keeps a bounded
+ * number of them. Cached rows are evicted according to the CLOCK algorithm,
+ * which approximates a least-recently-used policy: a hand cycles over the cached rows,
+ * and evicts the first row that has not been accessed since the hand passed it last.
+ * Accesses to cached rows do not block each other, and rows are calculated outside
+ * the lock, so that concurrent runs can calculate different rows at the same time.
+ * Single distances of uncached rows are calculated individually without calculating the row.
+ * @param barcodes	The barcodes
+ * @param capacity	The maximum number of cached rows
+ */
+class LazyDistanceMatrix(barcodes: Array[String], val capacity: Int) extends DistanceMatrix {
+  require(capacity > 0, "The capacity must be greater than 0!")
+
+  private val n = barcodes.length
+
+  // the length of the longest barcode, which determines the size of the Levenshtein buffers
+  private val maxLength = BarcodeDistanceCalculator.getMaxLength(barcodes)
+
+  // buffers for single distances, one pair per thread
+  private val buffers = new ThreadLocal[(Array[Int], Array[Int])] {
+    override def initialValue(): (Array[Int], Array[Int]) =
+      (new Array[Int](maxLength + 1), new Array[Int](maxLength + 1))
+  }
+
+  // the cached rows (null if a row is not cached)
+  private val rows = new AtomicReferenceArray[Array[Int]](n)
+
+  // the reference flags of the rows, which are set on each access. Concurrent updates
+  // may be lost, which only affects the choice of the evicted row
+  private val referenced = new Array[Boolean](n)
+
+  // the indices of the cached rows in the order in which the hand visits them
+  private val slots = new Array[Int](math.min(capacity, n))
+  private var numCached = 0
+  private var hand = 0
+
+  def size: Int = n
+
+  def apply(i: Int): Array[Int] = {
+    val row = rows.get(i)
+    if (row != null) {
+      referenced(i) = true
+      row
+    } else
+      load(i, BarcodeDistanceCalculator.getDistRow(barcodes, i, maxLength))
+  }
+
+  def apply(i: Int, j: Int): Int = {
+    // use a cached row if possible, but do not calculate a row for a single distance
+    val row = rows.get(i)
+    if (row != null)
+      row(j)
+    else {
+      val column = rows.get(j)
+      if (column != null)
+        column(i)
+      else if (i == j)
+        Integer.MAX_VALUE
+      else {
+        val (previous, current) = buffers.get
+        BarcodeDistanceCalculator.stringDist(barcodes(i), barcodes(j), previous, current)
+      }
+    }
+  }
+
+  /**
+   * The distances do not exceed the barcode length, which avoids calculating all rows
+   */
+  def maxDist: Int = maxLength
+
+  def storesAllRows: Boolean = false
+
+  /**
+   * Gets the number of cached rows
+   * @return The number of rows
+   */
+  def numCachedRows: Int = synchronized {
+    numCached
+  }
+
+  /**
+   * Inserts a calculated row into the cache, evicting another row if the cache is full
+   * @param i	The index of the row
+   * @param row	The row
+   * @return The cached row, which differs from the supplied row
+   * if another thread has cached the row in the meantime
+   */
+  private def load(i: Int, row: Array[Int]): Array[Int] = synchronized {
+    val cached = rows.get(i)
+    if (cached != null)
+      cached
+    else {
+      if (numCached < slots.length) {
+        slots(numCached) = i
+        numCached += 1
+      } else {
+        // skip (and unmark) the rows that have been accessed since the last pass
+        while (referenced(slots(hand))) {
+          referenced(slots(hand)) = false
+          hand = (hand + 1) % slots.length
+        }
+        rows.set(slots(hand), null)
+        slots(hand) = i
+        hand = (hand + 1) % slots.length
+      }
+      referenced(i) = true
+      rows.set(i, row)
+      row
+    }
+  }
+
+  /**
+   * The cached rows are extended by the distances to the new barcodes
+   */
+  def extend(barcodes: Array[String]): DistanceMatrix = synchronized {
+    val extended = new LazyDistanceMatrix(barcodes, capacity)
+    val newBarcodes = barcodes.drop(n)
+    for (k <- 0 until numCached) {
+      val i = slots(k)
+      val row = java.util.Arrays.copyOf(rows.get(i), barcodes.length)
+      val cross = BarcodeDistanceCalculator.getCrossDists(Array(barcodes(i)), newBarcodes)(0)
+      System.arraycopy(cross, 0, row, n, cross.length)
+      extended.load(i, row)
+    }
+    extended
+  }
+}
+
+/**
+ * Static methods of the DistanceMatrix classes
+ */
+object DistanceMatrix {
+
+  /**
+   * The default fraction of the maximum heap size (-Xmx) that distance rows may occupy
+   */
+  val defaultMemoryFraction = 0.5
+
+  /**
+   * Determines the number of rows that fit into the memory available for distance rows
+   * @param n	The number of barcodes
+   * @param memoryFraction	The fraction of the maximum heap size that distance rows may occupy
+   * @return The number of rows
+   */
+  def rowCapacity(n: Int, memoryFraction: Double): Int = {
+    // each row consists of n integers and an array header
+    val rowBytes = 4L * n + 16
+    math.max(1L, math.min(n, (Runtime.getRuntime.maxMemory * memoryFraction / rowBytes).toLong)).toInt
+  }
+
+  /**
+   * Creates the distance matrix of a barcode pool. All distances are calculated
+   * in advance if they fit into the memory available for distance rows,
+   * otherwise the rows are calculated on demand (see LazyDistanceMatrix)
+   * @param barcodes	The barcodes
+   * @param memoryFraction	The fraction of the maximum heap size that distance rows may occupy
+   * @return The distance matrix
+   */
+  def apply(barcodes: Array[String], memoryFraction: Double = defaultMemoryFraction): DistanceMatrix = {
+    require(memoryFraction > 0 && memoryFraction <= 1, "The memory fraction must be between 0 and 1!")
+    val capacity = rowCapacity(barcodes.length, memoryFraction)
+    if (capacity >= barcodes.length)
+      new DenseDistanceMatrix(BarcodeDistanceCalculator.getBarcodeDists(barcodes))
+    else
+      new LazyDistanceMatrix(barcodes, capacity)
+  }
+}
@@ -0,0 +1,271 @@
+package main.code
+package algorithm
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * A set of index pairs for dual indexing, in which each sample is identified
+ * by the combination of a first (i7) and a second (i5) index barcode
+ * @param first	The first index of each pair
+ * @param second	The second index of each pair
+ * @param minDist	The minimum distance between any two pairs
+ */
+class BarcodePairSet(val first: Array[String], val second: Array[String], val minDist: Int) extends BarcodeSet {
+  require(first.length == second.length, "Each pair must comprise a first and a second index!")
+
+  /**
+   * The pairs are written in the notation of Illumina read headers (first+second)
+   */
+  def getBarcodes: Array[String] = first.indices.map(i => first(i) + "+" + second(i)).toArray
+
+  def getMinDist: Int = minDist
+
+  def getNumBarcodes: Int = first.length
+
+  override def toString(): String =
+    {
+      if (first.length == 0)
+        "(empty index pair set)"
+      else if (first.length == 1)
+        "1 index pair"
+      else
+        first.length + " index pairs (" + first.distinct.length + " first and " +
+          second.distinct.length + " second indices) with minimum distance " + minDist + describeGap
+    }
+
+  def copy(): BarcodeSet = {
+    val set = new BarcodePairSet(first, second, minDist)
+    set.minDistBound = minDistBound
+    set.sizeBound = sizeBound
+    set
+  }
+}
+
+/**
+ * Selection of index pairs for dual indexing from a pool of first (i7) and a pool
+ * of second (i5) index candidates. The distance between two pairs (a, b) and (a', b') is either
+ * the distance of the concatenated indices, d(a, a') + d(b, b'), or the per-index distance
+ * min(d(a, a'), d(b, b')), which requires both indices to differ (as for unique dual indices,
+ * where a swapped index does not yield another valid pair). The distance of an index to itself is 0.
+ * The pair distances are always derived from the two per-index distance matrices,
+ * so that the matrix of all pairs of pairs is never calculated.
+ * @param first	The candidates for the first index (all of the same length)
+ * @param second	The candidates for the second index (all of the same length)
+ * @param perIndex	Specifies that pairs are compared by the per-index distance instead of
+ * the distance of the concatenated indices
+ */
+class DualIndexSelector(val first: Array[String], val second: Array[String], val perIndex: Boolean) {
+
+  private val numFirst = first.length
+  private val numSecond = second.length
+
+  // the number of candidate pairs, which must fit into an array
+  private val numPairs: Int = {
+    val n = numFirst.toLong * numSecond
+    require(n > 0 && n <= Integer.MAX_VALUE - 8, "The number of index pairs must be between 1 and " +
+      (Integer.MAX_VALUE - 8) + "!")
+    n.toInt
+  }
+
+  // the distance matrices of both indices, which are calculated without the positions
+  // at which all candidates of an index agree (see BarcodePool.stripConstantPositions)
+  private lazy val distFirst = DistanceMatrix(BarcodePool.stripConstantPositions(first, new Array[String](0))._1)
+  private lazy val distSecond = DistanceMatrix(BarcodePool.stripConstantPositions(second, new Array[String](0))._1)
+
+  /**
+   * Combines the distances of the two indices into the distance of two pairs
+   * @param distA	The distance of the first indices (0 if they are equal)
+   * @param distB	The distance of the second indices (0 if they are equal)
+   * @return The pair distance
+   */
+  private def combine(distA: Int, distB: Int): Int =
+    if (perIndex) math.min(distA, distB) else distA + distB
+
+  /**
+   * Determines the second-index distances for which two pairs conflict
+   * @param distA	The distance of the first indices (0 if they are equal)
+   * @param minDist	The required minimum distance between any two pairs
+   * @return The pairs conflict if the distance of their second indices is below the returned value
+   * (Integer.MAX_VALUE if they conflict regardless of the second indices)
+   */
+  private def secondThreshold(distA: Int, minDist: Int): Int =
+    if (perIndex)
+      if (distA < minDist) Integer.MAX_VALUE else minDist
+    else
+      math.max(0, minDist - distA)
+
+  /**
+   * Calculates the distance between two candidate pairs
+   * @param p	The index of the first pair (first index * number of second candidates + second index)
+   * @param q	The index of the second pair
+   * @return The pair distance, or Integer.MAX_VALUE if both pairs are the same
+   */
+  def pairDist(p: Int, q: Int): Int = {
+    if (p == q)
+      return Integer.MAX_VALUE
+    val (a, b) = (p / numSecond, p % numSecond)
+    val (a2, b2) = (q / numSecond, q % numSecond)
+    combine(if (a == a2) 0 else distFirst(a, a2), if (b == b2) 0 else distSecond(b, b2))
+  }
+
+  /**
+   * Calculates the minimum distance between any two of the specified pairs
+   * @param pairs	The indices of the pairs
+   * @return The minimum distance
+   */
+  def getMinPairDist(pairs: Array[Int]): Int = {
+    var minDist = Integer.MAX_VALUE
+    for (i <- pairs.indices; j <- i + 1 until pairs.length)
+      minDist = math.min(minDist, pairDist(pairs(i), pairs(j)))
+    minDist
+  }
+
+  /**
+   * Counts for each candidate pair the number of other pairs with which it conflicts,
+   * i.e. whose distance is below the required minimum distance. The counts are derived
+   * from histograms of the per-index distances, which are capped at the minimum distance
+   * @param minDist	The required minimum distance between any two pairs
+   * @return The number of conflicting pairs for each pair
+   */
+  private def getConflictCounts(minDist: Int): Array[Int] = {
+    // for each first candidate, the number of first candidates with each (capped) distance
+    val histFirst = Array.tabulate(numFirst)(a => {
+      val row = distFirst(a)
+      val hist = new Array[Int](minDist + 1)
+      for (a2 <- 0 until numFirst)
+        hist(if (a2 == a) 0 else math.min(row(a2), minDist)) += 1
+      hist
+    })
+    // for each second candidate and threshold t <= minDist, the number of second candidates
+    // with a distance below t
+    val belowSecond = Array.tabulate(numSecond)(b => {
+      val row = distSecond(b)
+      val below = new Array[Int](minDist + 2)
+      for (b2 <- 0 until numSecond)
+        below(if (b2 == b) 1 else math.min(row(b2), minDist) + 1) += 1
+      for (t <- 1 until below.length)
+        below(t) += below(t - 1)
+      below
+    })
+
+    val counts = new Array[Int](numPairs)
+    for (a <- 0 until numFirst; b <- 0 until numSecond) {
+      var count = 0L
+      for (d <- 0 to minDist if histFirst(a)(d) > 0) {
+        val t = secondThreshold(d, minDist)
+        count += histFirst(a)(d).toLong * (if (t == Integer.MAX_VALUE) numSecond else belowSecond(b)(t))
+      }
+      // a pair does not conflict with itself
+      counts(a * numSecond + b) = (count - 1).toInt
+    }
+    counts
+  }
+
+  /**
+   * Marks all candidate pairs that conflict with a selected pair
+   * @param p	The selected pair
+   * @param minDist	The required minimum distance between any two pairs
+   * @param blocked	The flags of the pairs that can no longer be selected
+   */
+  private def block(p: Int, minDist: Int, blocked: Array[Boolean]): Unit = {
+    val (a, b) = (p / numSecond, p % numSecond)
+    val rowFirst = distFirst(a)
+    val rowSecond = distSecond(b)
+    for (a2 <- 0 until numFirst) {
+      val t = secondThreshold(if (a2 == a) 0 else rowFirst(a2), minDist)
+      val offset = a2 * numSecond
+      if (t == Integer.MAX_VALUE)
+        java.util.Arrays.fill(blocked, offset, offset + numSecond, true)
+      else if (t > 0)
+        for (b2 <- 0 until numSecond if (if (b2 == b) 0 else rowSecond(b2)) < t)
+          blocked(offset + b2) = true
+    }
+  }
+
+  /**
+   * Selects a large set of index pairs whose members have at least the specified pairwise distance.
+   * The pairs are considered in the order of their number of conflicting pairs (fewest first),
+   * and each pair that does not conflict with a previously selected pair is selected
+   * @param minDist	The required minimum distance between any two selected pairs
+   * @param progress	An optional listener that receives the progress of the selection
+   * @return A collection comprising the selected pairs, or null if the selection has been cancelled
+   */
+  def selectPairs(minDist: Int, progress: BarcodeProgressListener = null): BarcodeSetCollection = {
+    require(minDist > 0, "The minimum distance must be greater than 0!")
+
+    if (!BarcodeProgressListener.report(progress, 0, "Counting conflicts of " + numPairs + " index pairs..."))
+      return null
+    // sort the pairs by their number of conflicts, which are stored in the upper half of the keys
+    val counts = getConflictCounts(minDist)
+    val order = Array.tabulate(numPairs)(p => (counts(p).toLong << 32) | p)
+    java.util.Arrays.sort(order)
+
+    val blocked = new Array[Boolean](numPairs)
+    val selected = new ArrayBuffer[Int]
+    val reportInterval = math.max(1, numPairs / 100)
+    for (k <- order.indices) {
+      val p = order(k).toInt
+      if (!blocked(p)) {
+        selected += p
+        block(p, minDist, blocked)
+      }
+      if ((k + 1) % reportInterval == 0 &&
+        !BarcodeProgressListener.report(progress, 100.0 * (k + 1) / numPairs,
+          (k + 1) + " of " + numPairs + " index pairs checked, " + selected.size + " selected"))
+        return null
+    }
+
+    val pairs = selected.toArray
+    new BarcodeSetCollection(Array[BarcodeSet](new BarcodePairSet(
+      pairs.map(p => first(p / numSecond)), pairs.map(p => second(p % numSecond)), getMinPairDist(pairs))))
+  }
+
+  /**
+   * Selects combinatorial dual indices, i.e. sets A and B of first and second indices
+   * whose pairs (a, b) comprise all combinations. Two different pairs either share
+   * one index, so that their distance is the distance of the other index, or they differ
+   * in both indices, so that their distance is at least as large. Thus, the minimum distance
+   * of the pairs is min(minDist(A), minDist(B)), and both index sets are selected independently
+   * by the Genetic Algorithm (see BarcodeSelector.selectBarcodesGA). The selected sets
+   * of both indices are combined, and the non-dominated combinations with respect to the
+   * number of pairs and their minimum distance are returned.
+   * As the pairs share indices, this requires the concatenated distance.
+   * @param numIndividuals	The population size for the GA
+   * @param numOffspring		The number of offspring in each generation of the GA
+   * @param numRuns					The number of independent GA runs
+   * @param numGenerations	The number of generations for which the GA is run
+   * @param numStreams	The number of parallel streams for recombination, mutation and evaluation
+   * @param progress	An optional listener that receives the progress of the selection
+   * @return A collection comprising the non-dominated pair sets, or null if the selection has been cancelled
+   */
+  def selectCombinatorial(numIndividuals: Int = 100, numOffspring: Int = 200,
+                          numRuns: Int = 1, numGenerations: Int = 1000, numStreams: Int = 8,
+                          progress: BarcodeProgressListener = null): BarcodeSetCollection = {
+    require(!perIndex, "Combinatorial pairs share indices, so they require the concatenated distance!")
+
+    val indexSets = for ((candidates, name) <- Array((first, "first"), (second, "second"))) yield {
+      if (!BarcodeProgressListener.report(progress, 0, "Selecting " + name + " indices..."))
+        return null
+      val sets = new BarcodeSelector(candidates).selectBarcodesGA(numIndividuals, numOffspring,
+        numRuns, numGenerations, false, numStreams, InitType.INIT_FORWARD, progress)
+      if (sets == null)
+        return null
+      sets.sets.filter(_.getNumBarcodes > 0)
+    }
+
+    // the number of pairs and the minimum distance of each combination
+    val combinations = for (setA <- indexSets(0); setB <- indexSets(1))
+      yield (setA, setB, setA.getNumBarcodes * setB.getNumBarcodes, math.min(setA.getMinDist, setB.getMinDist))
+
+    // keep one combination for each non-dominated number of pairs and minimum distance
+    val nonDominated = combinations.filter(c => !combinations.exists(o =>
+      o._3 >= c._3 && o._4 >= c._4 && (o._3 > c._3 || o._4 > c._4)))
+      .groupBy(c => (c._3, c._4)).values.map(_.head).toArray
+      .sortBy(-_._3)
+
+    new BarcodeSetCollection(nonDominated.map { case (setA, setB, _, minDist) =>
+      val (a, b) = (setA.getBarcodes, setB.getBarcodes)
+      new BarcodePairSet(a.flatMap(Array.fill(b.length)(_)), Array.fill(a.length)(b).flatten, minDist): BarcodeSet
+    })
+  }
+}
@@ -0,0 +1,115 @@
+package main.code
+package algorithm
+
+import scala.reflect.ClassTag
+
+/**
+ * A fixed-capacity cache for fitness values of barcode subsets.
+ * Subsets are identified by their Zobrist hashes, i.e. the XOR
+ * of random 64-bit keys of all included barcodes, which the subsets
+ * maintain incrementally. Each entry additionally stores a copy of
+ * the subset to rule out hash collisions.
+ *
+ * The slots are organized in buckets of two entries. A new entry
+ * replaces the least recently used entry of its bucket.
+ * The buckets are divided into segments with separate locks,
+ * such that concurrent runs and parallel workers rarely block each other.
+ * @param capacity	The maximum number of stored fitness values
+ * @param numSegments	The number of independently locked segments
+ */
+class FitnessCache[V >: Null <: AnyRef : ClassTag](capacity: Int, numSegments: Int = 16) {
+
+  // number of buckets with two entries per segment
+  private val bucketsPerSegment = math.max(1, capacity / (2 * numSegments))
+  private val numSlots = numSegments * bucketsPerSegment * 2
+
+  private val keys = new Array[Long](numSlots)
+  private val sets = new Array[Array[Long]](numSlots)
+  private val values = new Array[V](numSlots)
+
+  // for each bucket, the index (0 or 1) of the entry that was used last
+  private val lastUsed = new Array[Byte](numSlots / 2)
+
+  private val locks = Array.fill(numSegments)(new Object)
+
+  /**
+   * Determines the segment and the first slot of the bucket for a hash
+   * @param hash	The Zobrist hash of the subset
+   * @return A tuple of the segment index and the slot index
+   */
+  private def locate(hash: Long): (Int, Int) = {
+    // mix the bits, as the lower bits of XORed keys are not necessarily well distributed
+    var h = hash * 0x9E3779B97F4A7C15L
+    h ^= h >>> 32
+    val segment = ((h >>> 16) & 0x7FFFFFFF).toInt % numSegments
+    val bucket = (h & 0x7FFFFFFF).toInt % bucketsPerSegment
+    (segment, (segment * bucketsPerSegment + bucket) * 2)
+  }
+
+  /**
+   * Looks up the fitness of a subset
+   * @param hash	The Zobrist hash of the subset
+   * @param bits	The subset as a bit set
+   * @return The stored fitness, or None if the subset is not in the cache
+   */
+  def get(hash: Long, bits: Array[Long]): Option[V] = {
+    val (segment, slot) = locate(hash)
+    locks(segment).synchronized {
+      var i = 0
+      while (i < 2) {
+        val s = slot + i
+        if (values(s) != null && keys(s) == hash && java.util.Arrays.equals(sets(s), bits)) {
+          lastUsed(slot / 2) = i.toByte
+          return Some(values(s))
+        }
+        i += 1
+      }
+      None
+    }
+  }
+
+  /**
+   * Stores the fitness of a subset, evicting the least recently used entry
+   * of its bucket if necessary. A subset that is already stored is only marked as used
+   * @param hash	The Zobrist hash of the subset
+   * @param bits	The subset as a bit set (a copy is stored)
+   * @param value	The fitness of the subset
+   */
+  def put(hash: Long, bits: Array[Long], value: V): Unit = {
+    val (segment, slot) = locate(hash)
+    locks(segment).synchronized {
+      // only mark the entry as used if the subset is already known (its fitness does not change)
+      var i = 0
+      while (i < 2) {
+        val s = slot + i
+        if (values(s) != null && keys(s) == hash && java.util.Arrays.equals(sets(s), bits)) {
+          lastUsed(slot / 2) = i.toByte
+          return
+        }
+        i += 1
+      }
+      // otherwise replace the entry that has not been used last
+      val j = 1 - lastUsed(slot / 2)
+      keys(slot + j) = hash
+      sets(slot + j) = bits.clone()
+      values(slot + j) = value
+      lastUsed(slot / 2) = j.toByte
+    }
+  }
+
+  /**
+   * Removes all entries from the cache
+   */
+  def clear(): Unit = {
+    for (segment <- locks.indices)
+      locks(segment).synchronized {
+        val from = segment * bucketsPerSegment * 2
+        val to = from + bucketsPerSegment * 2
+        java.util.Arrays.fill(keys, from, to, 0L)
+        java.util.Arrays.fill(sets.asInstanceOf[Array[AnyRef]], from, to, null)
+        java.util.Arrays.fill(values.asInstanceOf[Array[AnyRef]], from, to, null)
+        // entries stored after clearing must not be aged by the stamps of removed entries
+        java.util.Arrays.fill(lastUsed, from / 2, to / 2, 0.toByte)
+      }
+  }
+}
@@ -0,0 +1,275 @@
+package main.code
+package algorithm
+
+import scala.collection.mutable.ArrayBuffer
+import scala.collection.parallel.mutable.ParArray
+import scala.util.Random
+
+/**
+ * A heuristic selection of a large barcode subset with a required minimum distance
+ * from candidate pools that are too large for a pairwise distance matrix.
+ * The task corresponds to a maximum independent set in the conflict graph,
+ * in which two barcodes are adjacent if their distance is below the required minimum distance.
+ * The sparse conflict graph is built with a NeighbourIndex, an initial solution is
+ * selected by a greedy minimum-degree heuristic, and the solution is improved by the
+ * iterated local search of Andrade, Resende and Werneck (ARW), which replaces single
+ * selected barcodes by two barcodes ((1,2)-swaps) and perturbs the solution
+ * by forcing barcodes into it.
+ * @param barcodes	The candidate barcodes (all of the same length, unless the Levenshtein distance is used)
+ * @param locked	Barcodes that are included in the selection regardless of their distances
+ * to the candidates (e.g. an existing barcode kit that should be extended), which must have
+ * the required minimum distance to each other
+ */
+class LargePoolSelector(val barcodes: Array[String], val locked: Array[String]) {
+
+  /**
+   * Creates a selector without locked barcodes
+   * @param barcodes	The candidate barcodes (all of the same length, unless the Levenshtein distance is used)
+   */
+  def this(barcodes: Array[String]) = this(barcodes, new Array[String](0))
+
+  private val n = barcodes.length
+
+  // the conflict graph as sorted adjacency lists
+  private var adjacency: Array[Array[Int]] = null
+
+  // the current solution, and for each barcode the number of its neighbours in the solution
+  // (where locked barcodes count as permanent members of the solution)
+  private val inSolution = new Array[Boolean](n)
+  private val tightness = new Array[Int](n)
+  private var solutionSize = 0
+
+  // the barcodes that do not conflict with a locked barcode, and their number
+  private val selectable = Array.fill(n)(true)
+  private var numSelectable = n
+
+  // the changes of the current iteration (v for insertions, ~v for removals)
+  private var log = new Array[Int](16)
+  private var logSize = 0
+  private var logging = false
+
+  // the barcodes whose (1,2)-swaps have to be checked
+  private val pending = new ArrayBuffer[Int]
+
+  // marks for the search of non-adjacent pairs
+  private val stamps = new Array[Int](n)
+  private var stamp = 0
+
+  /**
+   * Selects a large barcode subset whose members have at least the specified pairwise distance
+   * @param minDist	The required minimum distance between any two selected barcodes
+   * @param numIterations	The number of perturbations of the iterated local search
+   * @param progress	An optional listener that receives the progress of the barcode selection
+   * @return A collection comprising the selected barcode subset, or null if the selection has been cancelled
+   */
+  def selectBarcodes(minDist: Int, numIterations: Int,
+                     progress: BarcodeProgressListener = null): BarcodeSetCollection = {
+    // the locked barcodes are always included, so they must not conflict with each other
+    val lockedMinDist = NeighbourIndex.getMinDist(locked, 0)
+    require(lockedMinDist >= minDist, "The locked barcodes have a minimum distance of " + lockedMinDist +
+      ", which is below the required minimum distance of " + minDist + "!")
+
+    if (n == 0)
+      return new BarcodeSetCollection(Array[BarcodeSet](new SimpleBarcodeSet(locked)))
+
+    // the index only needs the positions at which the barcodes differ
+    val (candidates, others) = BarcodePool.stripConstantPositions(barcodes, locked)
+    // no distance exceeds the length of the longest barcode
+    val length = (candidates ++ others).map(_.length).max
+    if (minDist > length) {
+      // all barcodes conflict with each other
+      return new BarcodeSetCollection(Array[BarcodeSet](new SimpleBarcodeSet(
+        if (locked.nonEmpty) locked else Array(barcodes(Random.nextInt(n))))))
+    }
+
+    if (locked.nonEmpty) {
+      // count the conflicts of the candidates with the locked barcodes
+      val lockedIndex = new NeighbourIndex(length, minDist)
+      others.foreach(lockedIndex.add)
+      for (v <- 0 until n) {
+        tightness(v) = lockedIndex.neighbours(candidates(v)).length
+        if (tightness(v) > 0) {
+          selectable(v) = false
+          numSelectable -= 1
+        }
+      }
+    }
+
+    if (!BarcodeProgressListener.report(progress, 0, "Building conflict graph"))
+      return null
+    val index = new NeighbourIndex(length, minDist)
+    candidates.foreach(index.add)
+    adjacency = ParArray.tabulate(n)(i => index.neighbours(candidates(i), i)).toArray
+
+    greedySelection()
+
+    // improve the initial solution
+    for (v <- 0 until n if inSolution(v))
+      pending += v
+    localSearch()
+
+    val reportInterval = math.max(1, numIterations / 100)
+    var iteration = 0
+    logging = true
+    // if all barcodes are selected, there is nothing left to improve
+    while (iteration < numIterations && solutionSize < numSelectable) {
+      val sizeBefore = solutionSize
+      logSize = 0
+      perturb()
+      localSearch()
+      // keep the perturbed solution only if it is not smaller
+      if (solutionSize < sizeBefore)
+        undo()
+      iteration += 1
+      if (iteration % reportInterval == 0 &&
+        !BarcodeProgressListener.report(progress, iteration * 100.0 / numIterations,
+          "Iteration " + iteration + "/" + numIterations + " Size: " + solutionSize))
+        return null
+    }
+
+    val selected = locked ++ barcodes.indices.filter(inSolution(_)).map(barcodes(_))
+    new BarcodeSetCollection(Array[BarcodeSet](
+      new SimpleBarcodeSet(selected, NeighbourIndex.getMinDist(selected, minDist))))
+  }
+
+  /**
+   * Determines a maximal independent set by repeatedly selecting the barcode
+   * with the fewest conflicts among the remaining barcodes
+   */
+  private def greedySelection(): Unit = {
+    val degrees = adjacency.map(_.length)
+    val queue = new BucketQueue(n, degrees.max)
+    for (v <- 0 until n if selectable(v))
+      queue.insert(v, degrees(v))
+    var v = queue.pollMin()
+    while (v >= 0) {
+      insert(v)
+      // the neighbours of v can no longer be selected
+      for (u <- adjacency(v) if queue.contains(u)) {
+        queue.remove(u)
+        for (w <- adjacency(u) if queue.contains(w)) {
+          degrees(w) -= 1
+          queue.update(w, degrees(w))
+        }
+      }
+      v = queue.pollMin()
+    }
+  }
+
+  /**
+   * Applies (1,2)-swaps to the pending barcodes until no improvement is possible
+   */
+  private def localSearch(): Unit = {
+    while (pending.nonEmpty) {
+      val x = pending.remove(pending.size - 1)
+      if (inSolution(x))
+        twoImprovement(x)
+    }
+  }
+
+  /**
+   * Replaces a selected barcode by two non-adjacent barcodes whose only
+   * selected neighbour it is, if there are such barcodes
+   * @param x	The selected barcode
+   */
+  private def twoImprovement(x: Int): Unit = {
+    val candidates = adjacency(x).filter(tightness(_) == 1)
+    if (candidates.length < 2)
+      return
+    for (u <- candidates) {
+      stamp += 1
+      stamps(u) = stamp
+      for (w <- adjacency(u))
+        stamps(w) = stamp
+      val w = candidates.indexWhere(stamps(_) != stamp)
+      if (w >= 0) {
+        remove(x)
+        insert(u)
+        insert(candidates(w))
+        pending += u
+        pending += candidates(w)
+        completeNeighbourhood(x)
+        return
+      }
+    }
+  }
+
+  /**
+   * Forces a random unselected barcode into the solution and removes its selected neighbours
+   */
+  private def perturb(): Unit = {
+    var v = Random.nextInt(n)
+    while (inSolution(v) || !selectable(v))
+      v = Random.nextInt(n)
+    val removed = adjacency(v).filter(inSolution(_))
+    for (u <- removed)
+      remove(u)
+    insert(v)
+    pending += v
+    for (u <- Random.shuffle(removed.toSeq))
+      completeNeighbourhood(u)
+  }
+
+  /**
+   * Restores maximality after a barcode has been removed from the solution
+   * by inserting its free neighbours, and schedules the selected barcodes
+   * that may now allow a (1,2)-swap
+   * @param x	The removed barcode
+   */
+  private def completeNeighbourhood(x: Int): Unit = {
+    for (v <- adjacency(x) if !inSolution(v) && tightness(v) == 0) {
+      insert(v)
+      pending += v
+    }
+    for (v <- adjacency(x) if !inSolution(v) && tightness(v) == 1)
+      pending ++= adjacency(v).find(inSolution(_))
+  }
+
+  /**
+   * Reverts the changes of the current iteration
+   */
+  private def undo(): Unit = {
+    pending.clear()
+    logging = false
+    while (logSize > 0) {
+      logSize -= 1
+      val entry = log(logSize)
+      if (entry >= 0) remove(entry) else insert(~entry)
+    }
+    logging = true
+  }
+
+  /**
+   * Adds a barcode to the solution
+   * @param v	The barcode
+   */
+  private def insert(v: Int): Unit = {
+    inSolution(v) = true
+    solutionSize += 1
+    for (u <- adjacency(v))
+      tightness(u) += 1
+    addToLog(v)
+  }
+
+  /**
+   * Removes a barcode from the solution
+   * @param v	The barcode
+   */
+  private def remove(v: Int): Unit = {
+    inSolution(v) = false
+    solutionSize -= 1
+    for (u <- adjacency(v))
+      tightness(u) -= 1
+    addToLog(~v)
+  }
+
+  // records a change of the solution
+  private def addToLog(entry: Int): Unit = {
+    if (!logging)
+      return
+    if (logSize == log.length)
+      log = java.util.Arrays.copyOf(log, logSize * 2)
+    log(logSize) = entry
+    logSize += 1
+  }
+}
@@ -27,4 +27,133 @@ public class Levenshtein {
         return d[a.length()][b.length()];
     }
 
-}
+    /**
+     * Calculates the levenshtein distance between two strings like levenshtein(a, b),
+     * but only keeps two rows of the dynamic programming table in buffers supplied
+     * by the caller, which avoids allocations when many distances are calculated
+     * @param a first string
+     * @param b second string
+     * @param previous buffer of at least b.length() + 1 entries
+     * @param current buffer of at least b.length() + 1 entries
+     * @return levenshtein distance as int
+     */
+    static int levenshtein(String a, String b, int[] previous, int[] current) {
+        for (int j = 0; j <= b.length(); j++)
+            previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int min = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                min = Math.min(min, previous[j] + 1);
+                current[j] = Math.min(min, current[j - 1] + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * Calculates the levenshtein distance between two strings up to a limit.
+     * Only the cells of the dynamic programming table that are less than limit
+     * rows or columns away from the diagonal are calculated, as the other cells are
+     * at least limit, and the calculation stops as soon as all cells of a row reach the limit
+     * @param a first string
+     * @param b second string
+     * @param limit the largest distance of interest (at least 1)
+     * @return levenshtein distance as int, or limit if the distance is at least limit
+     */
+    static int levenshtein(String a, String b, int limit) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) >= limit)
+            return limit;
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++)
+            previous[j] = Math.min(j, limit);
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - limit + 1);
+            int to = Math.min(m, i + limit - 1);
+            // the cells left and right of the band are at least limit
+            current[from - 1] = from == 1 ? Math.min(i, limit) : limit;
+            if (to < m)
+                current[to + 1] = limit;
+            int rowMin = current[from - 1];
+            char c = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int min = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                min = Math.min(min, previous[j] + 1);
+                min = Math.min(min, current[j - 1] + 1);
+                current[j] = Math.min(min, limit);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin >= limit)
+                return limit;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    /**
+     * Prepares the bit masks of a string for levenshtein(peq, length, b), where the mask
+     * of a character has a set bit at each position of the character in the string
+     * @param a the string (at most 64 characters)
+     * @return the masks indexed by character, or null if the string is longer than 64
+     * characters or contains non-ASCII characters
+     */
+    static long[] getPatternMasks(String a) {
+        if (a.length() > 64)
+            return null;
+        long[] peq = new long[128];
+        for (int i = 0; i < a.length(); i++) {
+            char c = a.charAt(i);
+            if (c >= 128)
+                return null;
+            peq[c] |= 1L << i;
+        }
+        return peq;
+    }
+
+    /**
+     * Calculates the levenshtein distance between two strings with the bit-parallel
+     * algorithm of Myers (in the formulation of Hyyroe), which processes a column of the
+     * dynamic programming table in a few operations on 64-bit words
+     * @param peq the masks of the first string (see getPatternMasks)
+     * @param length the length of the first string (at most 64)
+     * @param b second string
+     * @return levenshtein distance as int
+     */
+    static int levenshtein(long[] peq, int length, String b) {
+        if (length == 0)
+            return b.length();
+        long highBit = 1L << (length - 1);
+        // the vertical deltas of the current column (all +1 in the first column)
+        long pv = -1L;
+        long mv = 0L;
+        int score = length;
+        for (int j = 0; j < b.length(); j++) {
+            char c = b.charAt(j);
+            long eq = c < 128 ? peq[c] : 0L;
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & highBit) != 0)
+                score++;
+            else if ((mh & highBit) != 0)
+                score--;
+            // the first row increases by one in each column
+            ph = (ph << 1) | 1L;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+        return score;
+    }
+
+}
\ No newline at end of file
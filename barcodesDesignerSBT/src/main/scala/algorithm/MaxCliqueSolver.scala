@@ -0,0 +1,195 @@
+package main.code
+package algorithm
+
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+
+import scala.collection.parallel.immutable.ParSeq
+
+/**
+ * An exact solver for the maximum clique problem based on the bit-parallel
+ * branch and bound algorithm BBMC (San Segundo et al.). The candidate vertices
+ * of each search node are stored as bit sets, and a greedy sequential coloring
+ * of the candidates yields an upper bound on the size of the cliques that can still
+ * be reached, which is used to prune the search tree. The branches of the root node
+ * are explored concurrently and share the size of the best clique found so far.
+ * @param adjacency	The adjacency matrix of the graph as one bit set per vertex
+ * (a vertex must not be adjacent to itself)
+ */
+class MaxCliqueSolver(adjacency: Array[Array[Long]]) {
+
+  private val n = adjacency.length
+
+  // the vertices sorted by non-increasing degree,
+  // which is the order in which the vertices are numbered internally
+  private val order: Array[Int] = (0 until n).sortBy(v => -Bitset.cardinality(adjacency(v))).toArray
+
+  // the adjacency matrix in the internal numbering
+  private val graph: Array[Array[Long]] = {
+    val position = new Array[Int](n)
+    for (k <- order.indices)
+      position(order(k)) = k
+    order.map(v => {
+      val neighbours = Bitset.empty(n)
+      var u = Bitset.nextSetBit(adjacency(v), 0)
+      while (u >= 0) {
+        Bitset.set(neighbours, position(u))
+        u = Bitset.nextSetBit(adjacency(v), u + 1)
+      }
+      neighbours
+    })
+  }
+
+  // the best clique found so far (in the internal numbering) and its size
+  private val bestSize = new AtomicInteger(0)
+  private var best: Array[Int] = new Array[Int](0)
+
+  private val cancelled = new AtomicBoolean(false)
+
+  /**
+   * Determines a maximum clique of the graph
+   * @param progress	An optional listener that receives the progress of the search
+   * @return The vertices of a maximum clique, or null if the search has been cancelled
+   */
+  def solve(progress: BarcodeProgressListener = null): Array[Int] = {
+    if (n == 0)
+      return new Array[Int](0)
+
+    // start with a greedy clique as a lower bound
+    val initial = new Array[Int](n)
+    val common = Bitset.full(n)
+    var size = 0
+    var v = Bitset.nextSetBit(common, 0)
+    while (v >= 0) {
+      initial(size) = v
+      size += 1
+      intersect(common, graph(v))
+      v = Bitset.nextSetBit(common, v + 1)
+    }
+    updateBest(initial, size)
+
+    // color the vertices at the root, and create the subproblems of the root branches,
+    // where the branch of a vertex excludes all vertices that are branched on before
+    val candidates = Bitset.full(n)
+    val (vertices, colors, count) = colorSort(candidates, bestSize.get + 1)
+    val branches = new Array[Array[Long]](count)
+    for (i <- (0 until count).reverse) {
+      val next = candidates.clone()
+      intersect(next, graph(vertices(i)))
+      branches(i) = next
+      Bitset.clear(candidates, vertices(i))
+    }
+
+    // explore the branches concurrently, starting with the ones with the largest colors
+    val completed = new AtomicInteger(0)
+    ParSeq.range(0, count).foreach(k => {
+      val i = count - 1 - k
+      if (!cancelled.get && 1 + colors(i) > bestSize.get) {
+        val clique = new Array[Int](n)
+        clique(0) = vertices(i)
+        if (Bitset.nextSetBit(branches(i), 0) < 0)
+          updateBest(clique, 1)
+        else
+          expand(clique, 1, branches(i))
+      }
+      branches(i) = null
+      if (!BarcodeProgressListener.report(progress, completed.incrementAndGet() * 100.0 / count,
+        "Branch " + completed.get + "/" + count + " Best size: " + bestSize.get))
+        cancelled.set(true)
+    })
+
+    if (cancelled.get)
+      null
+    else
+      synchronized {
+        best.map(order(_))
+      }
+  }
+
+  /**
+   * Expands the current clique by all candidates recursively
+   * @param clique	The vertices of the current clique (only the first size entries are valid)
+   * @param size	The size of the current clique
+   * @param candidates	The vertices that are adjacent to all vertices of the current clique
+   * (modified by the method)
+   */
+  private def expand(clique: Array[Int], size: Int, candidates: Array[Long]): Unit = {
+    if (cancelled.get)
+      return
+    val (vertices, colors, count) = colorSort(candidates, bestSize.get - size + 1)
+    var i = count - 1
+    while (i >= 0) {
+      // the remaining candidates cannot form a larger clique than the best one
+      if (size + colors(i) <= bestSize.get)
+        return
+      val v = vertices(i)
+      clique(size) = v
+      val next = candidates.clone()
+      intersect(next, graph(v))
+      if (Bitset.nextSetBit(next, 0) < 0)
+        updateBest(clique, size + 1)
+      else
+        expand(clique, size + 1, next)
+      Bitset.clear(candidates, v)
+      i -= 1
+    }
+  }
+
+  /**
+   * Colors the candidates greedily, where each color class is an independent set
+   * @param candidates	The candidate vertices
+   * @param minColor	The smallest color for which vertices are returned,
+   * as vertices with smaller colors cannot lead to a better clique
+   * @return A tuple comprising the vertices with colors of at least minColor
+   * in non-decreasing order of colors, their colors, and the number of these vertices
+   */
+  private def colorSort(candidates: Array[Long], minColor: Int): (Array[Int], Array[Int], Int) = {
+    val remaining = candidates.clone()
+    val numCandidates = Bitset.cardinality(candidates)
+    val vertices = new Array[Int](numCandidates)
+    val colors = new Array[Int](numCandidates)
+    var count = 0
+    var color = 0
+    while (Bitset.nextSetBit(remaining, 0) >= 0) {
+      color += 1
+      // the vertices that can still join the current color class
+      val colorClass = remaining.clone()
+      var v = Bitset.nextSetBit(colorClass, 0)
+      while (v >= 0) {
+        Bitset.clear(remaining, v)
+        // neighbours of v cannot have the same color
+        subtract(colorClass, graph(v))
+        if (color >= minColor) {
+          vertices(count) = v
+          colors(count) = color
+          count += 1
+        }
+        v = Bitset.nextSetBit(colorClass, v + 1)
+      }
+    }
+    (vertices, colors, count)
+  }
+
+  /**
+   * Stores a clique if it is larger than the best clique so far
+   * @param clique	The vertices of the clique (only the first size entries are valid)
+   * @param size	The size of the clique
+   */
+  private def updateBest(clique: Array[Int], size: Int): Unit = synchronized {
+    if (size > bestSize.get) {
+      best = clique.take(size)
+      bestSize.set(size)
+    }
+  }
+
+  // intersects a bit set with another bit set
+  private def intersect(bits: Array[Long], other: Array[Long]): Unit = {
+    for (w <- bits.indices)
+      bits(w) &= other(w)
+  }
+
+  // removes the bits of another bit set from a bit set
+  private def subtract(bits: Array[Long], other: Array[Long]): Unit = {
+    for (w <- bits.indices)
+      bits(w) &= ~other(w)
+  }
+}
@@ -0,0 +1,260 @@
+package main.code
+package algorithm
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * An index that finds the barcodes whose distance to a query barcode
+ * is below a threshold without calculating all pairwise distances.
+ * The barcodes are split into as many blocks as the threshold.
+ * By the pigeonhole principle, two barcodes with a Hamming distance below
+ * the threshold agree in at least one block. For the Levenshtein distance,
+ * at least one block of an indexed barcode occurs in the query barcode
+ * shifted by less than the threshold. The blocks are stored in hash tables,
+ * and the candidates found by the block lookups are verified by calculating their distance.
+ * For the Levenshtein distance, the barcodes may have different lengths. The barcodes
+ * of each length are split into their own blocks, and only lengths that differ from
+ * the query length by less than the threshold are searched. Barcodes shorter than the
+ * threshold have empty blocks, so that they are always verified.
+ * @param length	The length of the barcodes (for barcodes of different lengths, the length of any barcode)
+ * @param minDist	The distance threshold (at least 1)
+ */
+class NeighbourIndex(length: Int, minDist: Int) {
+  require(minDist >= 1, "The distance threshold must be at least 1!")
+
+  // the distance metric for which the index is built
+  private val distanceType = BarcodeDistanceCalculator.distanceType
+
+  // the maximum shift of a block in the query barcode
+  private val maxShift = if (distanceType == 0) 0 else minDist - 1
+
+  /**
+   * The blocks of the barcodes of one length
+   * @param barcodeLength	The length of the barcodes
+   */
+  private class Partition(val barcodeLength: Int) {
+    // the start positions of the blocks, followed by the barcode length
+    val blockStarts: Array[Int] = Array.tabulate(minDist + 1)(b => b * barcodeLength / minDist)
+
+    // one hash table per block that maps the block content to the indexed barcodes
+    val tables: Array[java.util.HashMap[String, Postings]] = Array.fill(minDist)(new java.util.HashMap[String, Postings])
+  }
+
+  // the partitions of the barcode lengths
+  private val partitions = new ArrayBuffer[Partition]
+
+  // the indexed barcodes
+  private val barcodes = new ArrayBuffer[String]
+
+  // for the Hamming distance, the barcodes are additionally encoded with 2 bits per nucleotide,
+  // so that the mismatches can be counted by bit operations
+  private var packed = distanceType == 0 && length <= 32
+  private var codes = new Array[Long](16)
+
+  /**
+   * A growable list of barcode indices
+   */
+  private class Postings {
+    var ids = new Array[Int](2)
+    var size = 0
+
+    def add(id: Int): Unit = {
+      if (size == ids.length)
+        ids = java.util.Arrays.copyOf(ids, size * 2)
+      ids(size) = id
+      size += 1
+    }
+  }
+
+  /**
+   * Gets the number of indexed barcodes
+   * @return The number of barcodes
+   */
+  def size: Int = barcodes.size
+
+  /**
+   * Gets an indexed barcode
+   * @param id	The index of the barcode
+   * @return The barcode
+   */
+  def apply(id: Int): String = barcodes(id)
+
+  /**
+   * Adds a barcode to the index
+   * @param barcode	The barcode to add
+   * @return The index of the barcode, which is the number of previously added barcodes
+   */
+  def add(barcode: String): Int = {
+    val id = barcodes.size
+    barcodes += barcode
+    if (packed) {
+      val code = if (barcode.length == length) NeighbourIndex.encode(barcode) else -1L
+      if (code < 0)
+        packed = false
+      else {
+        if (id == codes.length)
+          codes = java.util.Arrays.copyOf(codes, id * 2)
+        codes(id) = code
+      }
+    }
+    val partition = partitions.find(_.barcodeLength == barcode.length).getOrElse({
+      partitions += new Partition(barcode.length)
+      partitions.last
+    })
+    for (b <- partition.tables.indices) {
+      val key = barcode.substring(partition.blockStarts(b), partition.blockStarts(b + 1))
+      var postings = partition.tables(b).get(key)
+      if (postings == null) {
+        postings = new Postings
+        partition.tables(b).put(key, postings)
+      }
+      postings.add(id)
+    }
+    id
+  }
+
+  /**
+   * Applies a function to all indexed barcodes that share a block with the query barcode
+   * (which may include the same barcode several times) until the function returns false
+   * @param query	The query barcode
+   * @param f	The function, which receives the index of a candidate and returns
+   * whether the search should continue
+   * @return false if the search has been stopped by the function, true otherwise
+   */
+  private def forallCandidates(query: String, f: Int => Boolean): Boolean = {
+    for (partition <- partitions if math.abs(partition.barcodeLength - query.length) <= maxShift;
+         b <- partition.tables.indices) {
+      val start = partition.blockStarts(b)
+      val end = partition.blockStarts(b + 1)
+      for (shift <- -maxShift to maxShift if start + shift >= 0 && end + shift <= query.length) {
+        val postings = partition.tables(b).get(query.substring(start + shift, end + shift))
+        if (postings != null) {
+          var k = 0
+          while (k < postings.size) {
+            if (!f(postings.ids(k)))
+              return false
+            k += 1
+          }
+        }
+      }
+    }
+    true
+  }
+
+  /**
+   * Finds all indexed barcodes whose distance to the query barcode is below the threshold
+   * @param query	The query barcode
+   * @param exclude	The index of a barcode that is not reported (e.g. the query itself), or -1
+   * @return The ascending indices of the close barcodes
+   */
+  def neighbours(query: String, exclude: Int = -1): Array[Int] = {
+    val isClose = closeTo(query)
+    var found = new Array[Int](16)
+    var numFound = 0
+    forallCandidates(query, id => {
+      if (id != exclude && isClose(id)) {
+        if (numFound == found.length)
+          found = java.util.Arrays.copyOf(found, numFound * 2)
+        found(numFound) = id
+        numFound += 1
+      }
+      true
+    })
+    // a barcode can be found in several blocks, so the few verified barcodes
+    // are sorted to remove duplicates (rather than the many candidates)
+    java.util.Arrays.sort(found, 0, numFound)
+    var numNeighbours = 0
+    for (k <- 0 until numFound) {
+      if (k == 0 || found(k - 1) != found(k)) {
+        found(numNeighbours) = found(k)
+        numNeighbours += 1
+      }
+    }
+    java.util.Arrays.copyOf(found, numNeighbours)
+  }
+
+  /**
+   * Checks whether any indexed barcode has a distance below the threshold to the query barcode
+   * @param query	The query barcode
+   * @return true if there is such a barcode, false otherwise
+   */
+  def hasNeighbour(query: String): Boolean = {
+    val isClose = closeTo(query)
+    !forallCandidates(query, id => !isClose(id))
+  }
+
+  /**
+   * Creates a function that checks whether the distance between an indexed barcode
+   * and the query barcode is below the threshold
+   * @param query	The query barcode
+   * @return The function, which receives the index of a barcode
+   */
+  private def closeTo(query: String): Int => Boolean = {
+    val code = if (packed && query.length == length) NeighbourIndex.encode(query) else -1L
+    if (code >= 0)
+      id => NeighbourIndex.countMismatches(code, codes(id)) < minDist
+    else
+      id => BarcodeDistanceCalculator.isCloserThan(query, barcodes(id), minDist)
+  }
+}
+
+/**
+ * Static methods of the NeighbourIndex class
+ */
+object NeighbourIndex {
+
+  // selects the lower bit of each 2-bit nucleotide code
+  private val lowerBits = 0x5555555555555555L
+
+  /**
+   * Encodes a barcode of at most 32 nucleotides with 2 bits per nucleotide
+   * @param barcode	The barcode
+   * @return The code, or -1 if the barcode contains other characters than A, C, G and T
+   */
+  private def encode(barcode: String): Long = {
+    var code = 0L
+    for (i <- 0 until barcode.length) {
+      val nucleotide = "ACGT".indexOf(barcode.charAt(i))
+      if (nucleotide < 0)
+        return -1L
+      code |= nucleotide.toLong << (2 * i)
+    }
+    code
+  }
+
+  /**
+   * Counts the positions at which two encoded barcodes differ
+   * @param code1	The code of the first barcode
+   * @param code2	The code of the second barcode
+   * @return The Hamming distance between the barcodes
+   */
+  private def countMismatches(code1: Long, code2: Long): Int = {
+    val diff = code1 ^ code2
+    java.lang.Long.bitCount((diff | (diff >>> 1)) & lowerBits)
+  }
+
+  /**
+   * Determines the minimum distance of a barcode set, which is known to be at least
+   * a lower bound, by searching for close pairs with increasing thresholds.
+   * In contrast to BarcodeDistanceCalculator.getMinDist, this does not compare all pairs
+   * @param barcodes	The barcode set
+   * @param lowerBound	A lower bound for the minimum distance
+   * @return The minimum distance of the set, or Integer.MAX_VALUE for less than two barcodes
+   */
+  def getMinDist(barcodes: Array[String], lowerBound: Int): Int = {
+    if (barcodes.length < 2)
+      return Integer.MAX_VALUE
+    // no distance exceeds the length of the longest barcode
+    val length = barcodes.map(_.length).max
+    // a pair with a distance below the threshold has a distance of exactly threshold - 1
+    for (threshold <- math.max(1, lowerBound + 1) to length) {
+      val index = new NeighbourIndex(barcodes(0).length, threshold)
+      for (barcode <- barcodes) {
+        if (index.hasNeighbour(barcode))
+          return threshold - 1
+        index.add(barcode)
+      }
+    }
+    length
+  }
+}
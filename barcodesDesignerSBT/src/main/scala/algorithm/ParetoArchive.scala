@@ -0,0 +1,72 @@
+package main.code
+package algorithm
+
+import scala.collection.mutable.ArrayBuffer
+import scala.reflect.ClassTag
+
+/**
+ * An archive of non-dominated solutions that is updated online.
+ * A candidate is rejected if it is dominated by an archived solution
+ * or has the same fitness grouping as an archived solution that it does
+ * not dominate. Otherwise, it is added and all archived solutions it dominates
+ * are removed.
+ * Hence, the archive only grows with the number of non-dominated fitness values,
+ * and the non-dominated solutions can be obtained without further sorting.
+ * Insertions are synchronized, so that concurrent runs can share an archive.
+ */
+class ParetoArchive[T <: Individual[T] : ClassTag] {
+
+  // the archived solutions
+  private val solutions: ArrayBuffer[T] = new ArrayBuffer[T]
+
+  /**
+   * Inserts a candidate solution into the archive
+   * @param candidate	The solution to insert
+   * @return true if the candidate has been added, false if it has been rejected
+   */
+  def insert(candidate: T): Boolean = synchronized {
+    val grouping = candidate.getFitnessGrouping
+    if (solutions.exists(sol => sol.dominates(candidate) ||
+      (sol.getFitnessGrouping == grouping && !candidate.dominates(sol))))
+      false
+    else {
+      // remove the archived solutions that are dominated by the candidate
+      var i = 0
+      while (i < solutions.size) {
+        if (candidate.dominates(solutions(i))) {
+          // move the last solution to the free position
+          solutions(i) = solutions(solutions.size - 1)
+          solutions.trimEnd(1)
+        } else
+          i += 1
+      }
+      solutions += candidate
+      true
+    }
+  }
+
+  /**
+   * Inserts several candidate solutions into the archive
+   * @param candidates	The solutions to insert
+   */
+  def insertAll(candidates: Iterable[T]): Unit = synchronized {
+    for (candidate <- candidates)
+      insert(candidate)
+  }
+
+  /**
+   * Gets the number of archived solutions
+   * @return The size of the archive
+   */
+  def size: Int = synchronized {
+    solutions.size
+  }
+
+  /**
+   * Extracts the non-dominated solutions
+   * @return An array of the archived solutions
+   */
+  def getNonDominated: Array[T] = synchronized {
+    solutions.toArray
+  }
+}
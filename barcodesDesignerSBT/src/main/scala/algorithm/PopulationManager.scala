@@ -11,32 +11,75 @@ import scala.util.Random
 object PopulationManager {
 
   /**
-   * Determines a domination list for the supplied list of barcode sets.
-   * Here, each entry of the resulting map comprises a set of solutions that dominate
-   * the corresponding solution.
+   * Assigns the supplied solutions to Pareto fronts using the fast non-dominated
+   * sorting of Deb et al. Each pair of solutions is compared once, the solutions
+   * dominated by each solution are stored as index lists, and the fronts are peeled off
+   * by decrementing the domination counters of the dominated solutions.
    * @param solutions	The array of solutions to investigate
-   * @return The domination list
+   * @return An array comprising the index of the Pareto front (starting with 0)
+   * for each solution
    */
-  def getDominationList[T <: Individual[T]](solutions: Array[T]): Map[T, Set[T]] = {
-    (solutions zip solutions.map(sol1 =>
-      solutions.filter(sol2 => {
-        sol2.dominates(sol1)
-      }).toSet)).toMap
-  }
+  def getFrontIndices[T <: Individual[T]](solutions: Array[T]): Array[Int] = {
+    val n = solutions.length
+    // the number of solutions that dominate each solution
+    val dominationCounts = new Array[Int](n)
+    // the domination relations as pairs of dominating and dominated solutions
+    var dominating = new Array[Int](math.max(16, n))
+    var dominated = new Array[Int](math.max(16, n))
+    var numPairs = 0
+
+    def addPair(i: Int, j: Int): Unit = {
+      if (numPairs == dominating.length) {
+        dominating = java.util.Arrays.copyOf(dominating, numPairs * 2)
+        dominated = java.util.Arrays.copyOf(dominated, numPairs * 2)
+      }
+      dominating(numPairs) = i
+      dominated(numPairs) = j
+      numPairs += 1
+      dominationCounts(j) += 1
+    }
 
-  /**
-   * Identifies the next Pareto front from a domination list
-   * @param domList	The domination list, as returned by getDominationList()
-   * @return A tuple, where the first element comprises the non-dominated solutions,
-   * and the second element comprises the domination list of the remaining solutions
-   * (to be used to determine the next Pareto front)
-   */
-  def getNextParetoFront[T <: BarcodeSet](domList: Map[T, Set[T]]): (Set[T], Map[T, Set[T]]) = {
-    val nonDominated = (for (i <- domList.keys if domList(i).isEmpty) yield i).toSet
-    var remainingList = domList
-    for (i <- nonDominated) remainingList -= i
-    remainingList = remainingList.mapValues(_.diff(nonDominated))
-    (nonDominated, remainingList)
+    for (i <- 0 until n; j <- i + 1 until n) {
+      if (solutions(i).dominates(solutions(j)))
+        addPair(i, j)
+      if (solutions(j).dominates(solutions(i)))
+        addPair(j, i)
+    }
+
+    // group the dominated solutions by the dominating solution
+    val listStarts = new Array[Int](n + 1)
+    for (p <- 0 until numPairs)
+      listStarts(dominating(p) + 1) += 1
+    for (i <- 0 until n)
+      listStarts(i + 1) += listStarts(i)
+    val lists = new Array[Int](numPairs)
+    val fill = java.util.Arrays.copyOf(listStarts, n)
+    for (p <- 0 until numPairs) {
+      lists(fill(dominating(p))) = dominated(p)
+      fill(dominating(p)) += 1
+    }
+
+    // the first front consists of all non-dominated solutions
+    val frontIndices = Array.fill(n)(-1)
+    var current = (0 until n).filter(dominationCounts(_) == 0).toArray
+    var front = 0
+    while (current.nonEmpty) {
+      val next = new ArrayBuffer[Int]
+      for (i <- current) {
+        frontIndices(i) = front
+        // solutions that are only dominated by solutions on the current
+        // or previous fronts belong to the next front
+        for (p <- listStarts(i) until listStarts(i + 1)) {
+          val j = lists(p)
+          dominationCounts(j) -= 1
+          if (dominationCounts(j) == 0)
+            next += j
+        }
+      }
+      current = next.toArray
+      front += 1
+    }
+    frontIndices
   }
 
   /**
@@ -45,8 +88,7 @@ object PopulationManager {
    * @return An array comprising the subset of solutions that are non-dominated
    */
   def getNonDominated[T <: Individual[T]: ClassTag](solutions: Array[T]): Array[T] = {
-    val (paretoFront, _) = getNextParetoFront(getDominationList(solutions))
-    paretoFront.toArray
+    solutions.filter(sol1 => !solutions.exists(_.dominates(sol1))).distinct
   }
 }
 
@@ -59,77 +101,161 @@ object PopulationManager {
 class PopulationManager[T <: MOOIndividual[T] : ClassTag](initialPopulation: Array[T],
   crowdingObjectives: Array[(Int, Double)]) {
 
-  // internally manage the population in an array buffer
+  // internally manage the population in an array buffer,
+  // where the position of an individual is its slot in the columns below
   val population: ArrayBuffer[T] = new ArrayBuffer[T]
 
-  // internally store the Pareto fronts
-  val paretoFronts: ArrayBuffer[Set[T]] = new ArrayBuffer[Set[T]]
+  // columns storing the Pareto front index, the crowding distance
+  // and the values of the crowding objectives for each slot
+  // (as of the last update of the Pareto fronts)
+  private var frontIndices = new Array[Int](0)
+  private var crowdingDists = new Array[Double](0)
+  private var objectives = Array.fill(crowdingObjectives.length)(new Array[Double](0))
+
+  // the slots ordered by Pareto fronts, where the slots of front f are stored
+  // from position frontStarts(f) (inclusive) to frontStarts(f + 1) (exclusive)
+  private var frontOrder = new Array[Int](0)
+  private var frontStarts = new Array[Int](2)
+
+  // buffers for sorting and rearranging the columns
+  private var intBuffer = new Array[Int](0)
+  private var doubleBuffer = new Array[Double](0)
+
+  // the number of slots in the columns
+  private var numSlots = 0
+
   population ++= initialPopulation
   updateFronts()
 
   /**
-   * Recalculate the Pareto fronts of the current population
+   * Gets the number of Pareto fronts in the population
+   * @return The number of Pareto fronts
    */
-  def updateFronts(): Any = {
-    val domList = PopulationManager.getDominationList(population.toArray)
-
-    // get first Pareto front
-    var front = PopulationManager.getNextParetoFront(domList)
-    var frontIndex = 0
-    var stop = false
+  def numFronts: Int = frontStarts.length - 1
 
-    paretoFronts.clear()
-    // add current front to results
-    paretoFronts += front._1
+  /**
+   * Enlarges the columns if they cannot store the specified number of slots
+   * @param n	The required number of slots
+   */
+  private def ensureCapacity(n: Int): Unit = {
+    if (frontIndices.length < n) {
+      frontIndices = new Array[Int](n)
+      crowdingDists = new Array[Double](n)
+      objectives = Array.fill(crowdingObjectives.length)(new Array[Double](n))
+      frontOrder = new Array[Int](n)
+      intBuffer = new Array[Int](n)
+      doubleBuffer = new Array[Double](n)
+    }
+  }
 
-    do {
+  /**
+   * Recalculate the Pareto fronts of the current population
+   */
+  def updateFronts(): Any = {
+    val solutions = population.toArray
+    numSlots = solutions.length
+    ensureCapacity(numSlots)
+
+    val indices = PopulationManager.getFrontIndices(solutions)
+    System.arraycopy(indices, 0, frontIndices, 0, numSlots)
+    for (o <- crowdingObjectives.indices; s <- 0 until numSlots)
+      objectives(o)(s) = solutions(s).getFitnessValue(crowdingObjectives(o)._1)
+
+    // order the slots by Pareto fronts (an empty population has one empty front)
+    val fronts = if (numSlots == 0) 1 else indices.max + 1
+    frontStarts = new Array[Int](fronts + 1)
+    for (s <- 0 until numSlots)
+      frontStarts(frontIndices(s) + 1) += 1
+    for (f <- 0 until fronts)
+      frontStarts(f + 1) += frontStarts(f)
+    System.arraycopy(frontStarts, 0, intBuffer, 0, math.min(fronts, numSlots))
+    for (s <- 0 until numSlots) {
+      frontOrder(intBuffer(frontIndices(s))) = s
+      intBuffer(frontIndices(s)) += 1
+    }
 
+    for (f <- 0 until fronts) {
       // calculate crowding distances for individuals on the current front
-      updateCrowdingDists(front._1)
-
-      // update the stored Pareto front index of the individuals
-      for (set <- front._1) {
-        set.paretoFrontIndex = frontIndex
-      }
+      updateCrowdingDists(frontStarts(f), frontStarts(f + 1))
+    }
 
-      if (front._2.nonEmpty) {
-        // continue with the next front if any solutions are left
-        front = PopulationManager.getNextParetoFront(front._2)
-        paretoFronts += front._1
-        frontIndex += 1
-        // add current front to results
-      } else
-        stop = true
-    } while (!stop)
+    // update the stored Pareto front index of the individuals
+    for (s <- 0 until numSlots)
+      solutions(s).paretoFrontIndex = frontIndices(s)
   }
 
   /**
    * Updates the crowding distances for the solutions on one Pareto front
-   * @param front	The set of solutions on the Pareto front
+   * @param from	The first position of the front in frontOrder (inclusive)
+   * @param to	The last position of the front in frontOrder (exclusive)
    */
-  private def updateCrowdingDists(front: Set[T]): Unit = {
-    if (front.size == 1)
-      front.head.crowdingDistance = Double.PositiveInfinity
+  private def updateCrowdingDists(from: Int, to: Int): Unit = {
+    if (to - from == 1)
+      crowdingDists(frontOrder(from)) = Double.PositiveInfinity
     else {
-      for (ind <- front)
-        ind.crowdingDistance = 0.0
+      for (k <- from until to)
+        crowdingDists(frontOrder(k)) = 0.0
       // iterate over objectives
-      for ((obj, norm) <- crowdingObjectives) {
+      for (o <- crowdingObjectives.indices) {
+        val values = objectives(o)
+        val norm = crowdingObjectives(o)._2
         // sort the solutions by the current objective
-        val objVals: Array[(T, Double)] = (front zip front.map(_.getFitnessValue(obj))).toArray.sortBy(_._2)
+        sortSlots(from, to, values, descending = false)
 
-        for (i <- objVals.indices) {
+        for (k <- from until to) {
           // determine crowding distance based on "neighbours" for the current objective
-          if (i == 0 || i == objVals.length - 1)
-            objVals(i)._1.crowdingDistance = Double.PositiveInfinity
-          else {
-            objVals(i)._1.crowdingDistance = objVals(i)._1.crowdingDistance +
-              objVals(i + 1)._2 / norm - objVals(i - 1)._2 / norm
-          }
+          val s = frontOrder(k)
+          if (k == from || k == to - 1)
+            crowdingDists(s) = Double.PositiveInfinity
+          else
+            crowdingDists(s) += values(frontOrder(k + 1)) / norm - values(frontOrder(k - 1)) / norm
+        }
+      }
+    }
+    for (k <- from until to)
+      population(frontOrder(k)).crowdingDistance = crowdingDists(frontOrder(k))
+  }
 
+  /**
+   * Sorts a range of frontOrder by the values of a column
+   * using a stable bottom-up merge sort
+   * @param from	The first position of the range (inclusive)
+   * @param to	The last position of the range (exclusive)
+   * @param key	The column according to which the slots are sorted
+   * @param descending	If set to true, the slots are sorted in descending order,
+   * otherwise in ascending order
+   */
+  private def sortSlots(from: Int, to: Int, key: Array[Double], descending: Boolean): Unit = {
+    var src = frontOrder
+    var dst = intBuffer
+    var width = 1
+    while (width < to - from) {
+      var lo = from
+      while (lo < to) {
+        // merge the runs [lo, mid) and [mid, hi)
+        val mid = math.min(lo + width, to)
+        val hi = math.min(lo + 2 * width, to)
+        var i = lo
+        var j = mid
+        for (k <- lo until hi) {
+          if (j >= hi || (i < mid &&
+            (if (descending) key(src(i)) >= key(src(j)) else key(src(i)) <= key(src(j))))) {
+            dst(k) = src(i)
+            i += 1
+          } else {
+            dst(k) = src(j)
+            j += 1
+          }
         }
+        lo = hi
       }
+      val tmp = src
+      src = dst
+      dst = tmp
+      width *= 2
     }
+    if (src ne frontOrder)
+      System.arraycopy(src, from, frontOrder, from, to - from)
   }
 
   /**
@@ -169,44 +295,69 @@ class PopulationManager[T <: MOOIndividual[T] : ClassTag](initialPopulation: Arr
     }
 
     updateFronts()
-    population.clear
 
-    while (remaining > 0) {
-      if (paretoFronts(front).size > remaining) {
+    // the survivors are the slots at the first positions of frontOrder
+    var end = 0
+    while (remaining > 0 && front < numFronts) {
+      val from = frontStarts(front)
+      val to = frontStarts(front + 1)
+      if (to - from > remaining) {
         // more individuals on the front than needed => take the solutions with the highest crowding distances
-
-        val sortedFront = paretoFronts(front).toArray.sorted(Ordering.by((_: T).crowdingDistance).reverse)
-
-        // take exactly the best *remaining* (integer value) solutions into population
-        population ++= sortedFront.take(remaining)
+        sortSlots(from, to, crowdingDists, descending = true)
 
         // remove remaining solutions on the current front and recalculate crowding distances
-        paretoFronts(front) = paretoFronts(front) -- sortedFront.drop(remaining)
-
-        updateCrowdingDists(paretoFronts(front))
+        end = from + remaining
+        updateCrowdingDists(from, end)
 
         remaining = 0
       } else {
         // add the complete front to the result set
-        population ++= paretoFronts(front)
-        remaining -= paretoFronts(front).size
+        end = to
+        remaining -= to - from
       }
 
       // proceed to next front
       front += 1
     }
-    if (paretoFronts.size > front)
-      // remove further Pareto fronts
-      paretoFronts.trimEnd(paretoFronts.size - front)
 
+    // move the survivors to the first slots in the order of frontOrder,
+    // and remove further Pareto fronts
+    val survivors = Array.tabulate(end)(k => population(frontOrder(k)))
+    population.clear
+    population ++= survivors
+
+    for (k <- 0 until end)
+      intBuffer(k) = frontIndices(frontOrder(k))
+    System.arraycopy(intBuffer, 0, frontIndices, 0, end)
+    for (column <- crowdingDists +: objectives) {
+      for (k <- 0 until end)
+        doubleBuffer(k) = column(frontOrder(k))
+      System.arraycopy(doubleBuffer, 0, column, 0, end)
+    }
+    for (k <- 0 until end)
+      frontOrder(k) = k
+    frontStarts = java.util.Arrays.copyOf(frontStarts, front + 1)
+    frontStarts(front) = end
+    numSlots = end
   }
 
   /**
-   * Choose a random individual/solution from the population
-   * @return The chosen solution
+   * Performs a binary tournament on the individuals as of the last
+   * update of the Pareto fronts: Of two random individuals, the one on the
+   * smaller Pareto front wins, and on equal fronts the one with the larger
+   * crowding distance. If everything is equal, the winner is chosen randomly
+   * @return The winner of the tournament
    */
-  def chooseRandom(): T = {
-    population(Random.nextInt(population.size))
+  def tournament(): T = {
+    val a = Random.nextInt(numSlots)
+    val b = Random.nextInt(numSlots)
+    val winner =
+      if (frontIndices(a) != frontIndices(b))
+        if (frontIndices(a) < frontIndices(b)) a else b
+      else if (crowdingDists(a) != crowdingDists(b))
+        if (crowdingDists(a) > crowdingDists(b)) a else b
+      else if (Random.nextBoolean()) a else b
+    population(winner)
   }
 
   /**
@@ -217,4 +368,4 @@ class PopulationManager[T <: MOOIndividual[T] : ClassTag](initialPopulation: Arr
     PopulationManager.getNonDominated(population.toArray)
   }
 
-}
\ No newline at end of file
+}
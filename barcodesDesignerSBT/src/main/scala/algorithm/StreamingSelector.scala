@@ -0,0 +1,135 @@
+package main.code
+package algorithm
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * A single-pass selection of barcodes with a required minimum distance
+ * from a stream of candidates, such as a file that does not fit into memory.
+ * Each candidate is accepted if its distance to all previously accepted barcodes
+ * is at least the required minimum distance. Only the accepted barcodes are stored,
+ * and the distances are checked with a NeighbourIndex, so that neither the candidates
+ * nor a distance matrix are kept in memory.
+ * @param minDist	The required minimum distance between any two selected barcodes
+ */
+class StreamingSelector(minDist: Int) {
+  require(minDist > 0, "The minimum distance must be greater than 0!")
+
+  // the accepted barcodes
+  private val accepted = new ArrayBuffer[String]
+
+  // the index of the accepted barcodes, which is created for the first candidate
+  // (as the barcode length is not known before)
+  private var index: NeighbourIndex = null
+
+  // barcodes of different lengths can only be compared by the Levenshtein distance
+  private val variableLength = BarcodeDistanceCalculator.distanceType != 0
+
+  // the number of candidates seen so far
+  private var numCandidates = 0L
+
+  // a lower bound for the minimum distance of the accepted barcodes,
+  // which does not hold for locked barcodes
+  private var minDistBound = minDist
+
+  /**
+   * Offers a candidate barcode to the selection
+   * @param barcode	The candidate
+   * @return true if the candidate has been accepted, false otherwise
+   */
+  def offer(barcode: String): Boolean = {
+    numCandidates += 1
+    // without an index, the minimum distance exceeds the length of all barcodes,
+    // so that no second barcode can be accepted
+    if (accepted.nonEmpty && (index == null || index.hasNeighbour(barcode)))
+      false
+    else {
+      store(barcode)
+      true
+    }
+  }
+
+  /**
+   * Accepts a barcode regardless of its distances (e.g. a barcode of an existing kit
+   * that should be extended). Locked barcodes should be added before the candidates are offered
+   * @param barcode	The locked barcode
+   */
+  def lock(barcode: String): Unit = {
+    if (accepted.nonEmpty)
+      minDistBound = 0
+    store(barcode)
+  }
+
+  /**
+   * Adds a barcode to the accepted barcodes and to the index
+   * @param barcode	The barcode
+   */
+  private def store(barcode: String): Unit = {
+    if (accepted.isEmpty) {
+      // longer barcodes of a pool with different lengths may still be accepted
+      if (minDist <= barcode.length || variableLength)
+        index = new NeighbourIndex(barcode.length, minDist)
+    } else
+      require(variableLength || barcode.length == accepted(0).length, "All barcodes must have the same length!")
+    accepted += barcode
+    if (index != null)
+      index.add(barcode)
+  }
+
+  /**
+   * Offers all candidates of a stream to the selection
+   * @param candidates	The candidate barcodes, which are consumed one at a time
+   * @param progress	An optional listener that receives the progress of the barcode selection
+   * @return A collection comprising the accepted barcodes, or null if the selection has been cancelled
+   */
+  def selectBarcodes(candidates: Iterator[String], progress: BarcodeProgressListener): BarcodeSetCollection = {
+    for (barcode <- candidates) {
+      offer(barcode)
+      // the number of candidates is not known in advance
+      if (numCandidates % StreamingSelector.reportInterval == 0 &&
+        !BarcodeProgressListener.report(progress, 0,
+          numCandidates + " candidates read, " + accepted.size + " accepted"))
+        return null
+    }
+    getSelection
+  }
+
+  /**
+   * Offers all candidates of a text file with one barcode in each line to the selection,
+   * which reads the file one barcode at a time (see BarcodeReader.readBarcodesLazily).
+   * The file is closed in any case, including cancellation and malformed barcodes
+   * @param file	The name of the text file
+   * @param variableLength	Specifies that the barcodes may have different lengths
+   * @param progress	An optional listener that receives the progress of the barcode selection
+   * @return A collection comprising the accepted barcodes, or null if the selection has been cancelled
+   */
+  def selectBarcodes(file: String, variableLength: Boolean, progress: BarcodeProgressListener): BarcodeSetCollection =
+    BarcodeReader.readBarcodesLazily(file, variableLength)(selectBarcodes(_, progress))
+
+  /**
+   * Offers all candidates of an array to the selection
+   * @param candidates	The candidate barcodes
+   * @param progress	An optional listener that receives the progress of the barcode selection
+   * @return A collection comprising the accepted barcodes, or null if the selection has been cancelled
+   */
+  def selectBarcodes(candidates: Array[String], progress: BarcodeProgressListener): BarcodeSetCollection =
+    selectBarcodes(candidates.iterator, progress)
+
+  /**
+   * Gets the barcodes accepted so far
+   * @return A collection comprising the set of accepted barcodes
+   */
+  def getSelection: BarcodeSetCollection = {
+    val barcodes = accepted.toArray
+    new BarcodeSetCollection(Array[BarcodeSet](
+      new SimpleBarcodeSet(barcodes, NeighbourIndex.getMinDist(barcodes, minDistBound))))
+  }
+}
+
+/**
+ * Static members of the StreamingSelector class
+ */
+object StreamingSelector {
+  // the number of candidates after which the progress is reported
+  val reportInterval = 100000
+}
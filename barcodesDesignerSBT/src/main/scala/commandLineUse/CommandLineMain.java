@@ -44,7 +44,8 @@ public class CommandLineMain {
                 "number of runs for Genetic Algorithm", ArgType.TYPE_INT(), 1,
                 true);
         parser.add(new String[] { "-mindist", "-md" },
-                "minimum distance for early stopping", ArgType.TYPE_INT(), Integer.MAX_VALUE,
+                "required minimum distance of the selection (exact, heuristic and stream), or minimum distance for early stopping of the generation",
+                ArgType.TYPE_INT(), Integer.MAX_VALUE,
                 true);
         parser.add(new String[] { "-balancecolors", "-bc" }, "",
                 ArgType.TYPE_BOOL(), false, true);
@@ -60,6 +61,20 @@ public class CommandLineMain {
                 "distance metric (levenshtein or hamming)", ArgType.TYPE_STRING(), "levenshtein", true);
         parser.add(new String[] { "-parallel", "-par"},
                 "amount of parallel streams for recombination/mutation/fitness update", ArgType.TYPE_INT(), 4, true);
+        parser.add(new String[] { "-lockedfile", "-lf" },
+                "text file of locked barcodes that are included in the result",
+                ArgType.TYPE_STRING(), "", true);
+        parser.add(new String[] { "-initfile", "-if" },
+                "result file (json) whose sets seed the Genetic Algorithm",
+                ArgType.TYPE_STRING(), "", true);
+        parser.add(new String[] { "-file2", "-f2" },
+                "barcode text file of the second index (i5) for dual indexing",
+                ArgType.TYPE_STRING(), "", true);
+        parser.add(new String[] { "-pairdist", "-pd" },
+                "distance of index pairs (concatenated or perindex)",
+                ArgType.TYPE_STRING(), "concatenated", true);
+        parser.add(new String[] { "-method", "-m"},
+                "optimization method (ga, sa, exact, heuristic or stream)", ArgType.TYPE_STRING(), "ga", true);
         try {
             // parse and verify the supplied command line arguments
             parser.parseArgs(args);
@@ -104,6 +119,13 @@ public class CommandLineMain {
                         "-outtype must be \"text\" or \"json\"");
             String[] barcodes;
 
+            // check optimization method
+            String method = parser.getString("-method").toLowerCase();
+            if (!method.equals("ga") && !method.equals("sa") && !method.equals("exact")
+                    && !method.equals("heuristic") && !method.equals("stream"))
+                throw new ParseException(
+                        "-method must be \"ga\", \"sa\", \"exact\", \"heuristic\" or \"stream\"");
+
             // check distance metric
             String distanceMetric = parser.getString("-distMetric").toLowerCase();
             if (!distanceMetric.equals("levenshtein") && !distanceMetric.equals("hamming"))
@@ -126,14 +148,51 @@ public class CommandLineMain {
                 throw new ParseException(
                         "-gcmin must not be greater than -gcmax!");
 
+            // the selections without a distance matrix can compare barcodes
+            // of different lengths by the Levenshtein distance
+            boolean variableLength = type.equals("select") && distanceMetric.equals("levenshtein")
+                    && (method.equals("heuristic") || method.equals("stream"))
+                    && !parser.isSet("-file2");
+
+            // load the barcodes of an existing kit that should be extended
+            String[] locked = new String[0];
+            if (parser.isSet("-lockedfile"))
+                locked = BarcodeReader.readBarcodes(parser.getString("-lockedfile"), variableLength);
+
+            // a previous result can only seed the Genetic Algorithm
+            String initFile = null;
+            if (parser.isSet("-initfile")) {
+                if (!method.equals("ga"))
+                    throw new ParseException(
+                            "Parameter \"-initfile\" is only allowed with \"-method ga\"!");
+                initFile = parser.getString("-initfile");
+            }
+
             if (type.equals("select")) {
                 // barcode subset selection
 
-                if (parser.isSet("-mindist"))
+                if (method.equals("sa"))
                     throw new ParseException(
-                            "Parameter \"-mindist\" is not allowed with \"--type select\"!");
+                            "\"-method sa\" is not allowed with \"--type select\"!");
+
+                // the genetic algorithm optimizes the minimum distance itself,
+                // while the other methods maximize the set size for a given minimum distance
+                if (method.equals("ga") && parser.isSet("-mindist"))
+                    throw new ParseException(
+                            "Parameter \"-mindist\" is not allowed with \"--type select\" and \"-method ga\"!");
+                if (!method.equals("ga") && !parser.isSet("-mindist"))
+                    throw new ParseException(
+                            "Parameter \"-mindist\" is required with \"--type select\" and \"-method " + method + "\"!");
+                int minDist = parser.getInt("-mindist");
+                if (minDist <= 0)
+                    throw new ParseException(
+                            "-mindist must be greater than 0!");
 
                 boolean balanceColors = parser.getBoolean("-balancecolors");
+                // only the genetic algorithm optimizes the color balance
+                if (balanceColors && !method.equals("ga"))
+                    throw new ParseException(
+                            "Parameter \"-balancecolors\" is only allowed with \"-method ga\"!");
 
                 if (parser.isSet("-file")) {
                     // barcodes should be loaded from a file
@@ -148,8 +207,18 @@ public class CommandLineMain {
 
                     // load the barcodes from a file
                     String file = parser.getString("-file");
-                    progress.progress(0, "Loading barcodes from file...");
-                    barcodes = BarcodeReader.readBarcodes(file);
+                    if (method.equals("stream")) {
+                        // the file is read during the selection
+                        barcodes = null;
+                    } else {
+                        progress.progress(0, "Loading barcodes from file...");
+                        barcodes = BarcodeReader.readBarcodes(file, variableLength);
+                        // duplicates cannot be selected together, so they only enlarge the distance matrix
+                        BarcodePool pool = new BarcodePool(barcodes);
+                        if (pool.numDuplicates() > 0)
+                            progress.progress(0, "Removed " + pool.numDuplicates() + " duplicate barcodes");
+                        barcodes = pool.barcodes();
+                    }
 
                 } else {
                     // barcodes should be generated randomly
@@ -195,13 +264,114 @@ public class CommandLineMain {
                             generateHamming);
 
                 }
+                if (parser.isSet("-pairdist") && !parser.isSet("-file2"))
+                    throw new ParseException(
+                            "Parameter \"-pairdist\" requires \"-file2\"!");
+                if (parser.isSet("-file2")) {
+                    // dual indexing with the first index from -file and the second index from -file2
+                    if (!parser.isSet("-file"))
+                        throw new ParseException(
+                                "Parameter \"-file2\" requires \"-file\"!");
+                    if (!method.equals("ga") && !method.equals("heuristic"))
+                        throw new ParseException(
+                                "\"-method " + method + "\" is not allowed with \"-file2\"!");
+                    if (balanceColors || locked.length > 0 || initFile != null)
+                        throw new ParseException(
+                                "Parameters \"-balancecolors\", \"-lockedfile\" and \"-initfile\" are not allowed with \"-file2\"!");
+
+                    String pairDistance = parser.getString("-pairdist").toLowerCase();
+                    if (!pairDistance.equals("concatenated") && !pairDistance.equals("perindex"))
+                        throw new ParseException(
+                                "-pairdist must be \"concatenated\" or \"perindex\"");
+                    // combinatorial pairs share indices, so that their per-index distance is 0
+                    if (method.equals("ga") && pairDistance.equals("perindex"))
+                        throw new ParseException(
+                                "\"-pairdist perindex\" requires \"-method heuristic\"!");
+
+                    BarcodePool secondPool = new BarcodePool(
+                            BarcodeReader.readBarcodes(parser.getString("-file2")));
+                    if (secondPool.numDuplicates() > 0)
+                        progress.progress(0, "Removed " + secondPool.numDuplicates()
+                                + " duplicate barcodes of the second index");
+                    DualIndexSelector selector = new DualIndexSelector(barcodes,
+                            secondPool.barcodes(), pairDistance.equals("perindex"));
+
+                    progress.progress(0, "Selecting index pairs...");
+                    BarcodeSetCollection selectedPairs;
+                    if (method.equals("heuristic")) {
+                        // a set of pairs with the given minimum distance
+                        selectedPairs = selector.selectPairs(minDist, progress);
+                    } else {
+                        // all combinations of a first and a second index set
+                        selectedPairs = selector.selectCombinatorial(numIndividuals,
+                                numIndividuals * 2, numRuns, numIterations, numStreams, progress);
+                    }
+                    progress.progress(0, "Index pair selection finished!");
+
+                    String outString;
+                    if (outputType.equals("text")) {
+                        outString = selectedPairs.toString();
+                    } else {
+                        outString = selectedPairs.toJSON();
+                    }
+                    System.out.println(outString);
+                    if (parser.isSet("-outputfile")) {
+                        String outputPath = parser.getString("-outputfile");
+                        FileSaver.saveIfPossible(outputPath, outString);
+                    }
+                    System.exit(0);
+                }
+
+                // locked barcodes must be comparable to the candidates
+                if (!variableLength && barcodes != null && barcodes.length > 0 && locked.length > 0
+                        && locked[0].length() != barcodes[0].length())
+                    throw new ParseException(
+                            "Locked barcodes and candidates must have the same length!");
+
+                // the distance tables of the selector use 16-bit counts
+                if ((method.equals("ga") || method.equals("exact"))
+                        && barcodes.length + locked.length > BarcodeSelector.maxNumBarcodes())
+                    throw new ParseException(
+                            "\"-method " + method + "\" supports at most " + BarcodeSelector.maxNumBarcodes()
+                                    + " candidates and locked barcodes, use \"-method heuristic\" or \"-method stream\"!");
+
+                // the methods with a given minimum distance always include the locked barcodes
+                if (!method.equals("ga") && locked.length > 1) {
+                    int lockedMinDist = BarcodeDistanceCalculator.getMinDist(locked);
+                    if (lockedMinDist < minDist)
+                        throw new ParseException(
+                                "The locked barcodes have a minimum distance of " + lockedMinDist
+                                        + ", which is below \"-mindist\" (" + minDist + ")!");
+                }
+
                 // start selection of barcode subsets
                 progress.progress(0, "Selecting barcode subsets...");
-                BarcodeSelector selector = new BarcodeSelector(barcodes);
-                BarcodeSetCollection selectedSets = selector
-                        .selectBarcodesGA(numIndividuals, numIndividuals * 2,
-                                numRuns, numIterations, balanceColors,
-                                numStreams, InitType.INIT_FORWARD(), progress);
+                BarcodeSetCollection selectedSets;
+                if (method.equals("stream")) {
+                    // single pass over the candidates that keeps only the selected barcodes
+                    StreamingSelector selector = new StreamingSelector(minDist);
+                    for (String barcode : locked)
+                        selector.lock(barcode);
+                    if (barcodes == null)
+                        selectedSets = selector.selectBarcodes(parser.getString("-file"), variableLength, progress);
+                    else
+                        selectedSets = selector.selectBarcodes(barcodes, progress);
+                } else if (method.equals("heuristic")) {
+                    // large subset with the given minimum distance
+                    // without a pairwise distance matrix
+                    selectedSets = new LargePoolSelector(barcodes, locked).selectBarcodes(
+                            minDist, numIterations * 2 * numIndividuals, progress);
+                } else if (method.equals("exact")) {
+                    // provably largest subset with the given minimum distance
+                    selectedSets = new BarcodeSelector(barcodes, locked).selectBarcodesExact(minDist, progress);
+                } else {
+                    selectedSets = new BarcodeSelector(barcodes, locked)
+                            .selectBarcodesGA(numIndividuals, numIndividuals * 2,
+                                    numRuns, numIterations, balanceColors,
+                                    numStreams,
+                                    initFile == null ? InitType.INIT_FORWARD() : InitType.INIT_FROM_FILE(),
+                                    progress, initFile);
+                }
                 progress.progress(0, "Barcode selection finished!");
 
                 // print out results
@@ -219,9 +389,13 @@ public class CommandLineMain {
             } else {
                 // barcode set generation
 
-                if (parser.isSet("-balancecolors") || parser.isSet("-file"))
+                if (parser.isSet("-balancecolors") || parser.isSet("-file") || parser.isSet("-file2"))
+                    throw new ParseException(
+                            "Parameters \"-balancecolors\", \"-file\" and \"-file2\" are not allowed with \"--type generate\"!");
+
+                if (method.equals("exact") || method.equals("heuristic") || method.equals("stream"))
                     throw new ParseException(
-                            "Parameters \"-balancecolors\" and \"-file\" are not allowed with \"--type generate\"!");
+                            "\"-method " + method + "\" is not allowed with \"--type generate\"!");
 
                 // if only the length has been supplied, adapt the default
                 // barcode pattern
@@ -258,13 +432,33 @@ public class CommandLineMain {
                     throw new ParseException(
                             "-mindist must be greater than 0!");
 
+                // locked barcodes must match the fixed positions of the pattern
+                for (String barcode : locked) {
+                    boolean matches = barcode.length() == barcodePattern.length();
+                    for (int i = 0; matches && i < barcode.length(); i++)
+                        matches = barcodePattern.charAt(i) == '_'
+                                || Character.toUpperCase(barcodePattern.charAt(i)) == barcode.charAt(i);
+                    if (!matches)
+                        throw new ParseException(
+                                "Locked barcode " + barcode + " does not match the barcode pattern!");
+                }
+
                 BarcodeSetOptimizer gen = new BarcodeSetOptimizer(
                         barcodePattern, numBarcodes,
                         minGC / 100.0, maxGC / 100.0,
-                        generateHamming);
-                BarcodeSetCollection generatedSets = gen.optimizeBarcodeSets(
-                        numIndividuals, 2 * numIndividuals, numRuns,
-                        numIterations, minDist, numStreams, progress);
+                        generateHamming, locked);
+                BarcodeSetCollection generatedSets;
+                if (method.equals("sa")) {
+                    // simulated annealing with the same number of evaluated
+                    // sets as the Genetic Algorithm
+                    generatedSets = gen.annealBarcodeSets(numRuns,
+                            numIterations * 2 * numIndividuals, minDist,
+                            2.0, 0.05, progress);
+                } else {
+                    generatedSets = gen.optimizeBarcodeSets(
+                            numIndividuals, 2 * numIndividuals, numRuns,
+                            numIterations, minDist, numStreams, progress, initFile);
+                }
 
                 // print out results
                 String outString;
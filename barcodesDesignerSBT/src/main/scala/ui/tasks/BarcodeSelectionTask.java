@@ -2,6 +2,7 @@ package main.code.ui.tasks;
 
 import javafx.concurrent.Task;
 import main.code.algorithm.BarcodeGenerator;
+import main.code.algorithm.BarcodePool;
 import main.code.algorithm.BarcodeSelector;
 import main.code.algorithm.BarcodeSetCollection;
 import main.code.algorithm.InitType;
@@ -129,6 +130,8 @@ public class BarcodeSelectionTask extends Task<BarcodeSetCollection> {
 		// now select maximum-distance subsets of barcodes
 		updateProgress(0, 0);
 		updateMessage("Barcode selection: Initializing...");
+		// duplicates cannot be selected together, so they only enlarge the distance matrix
+		barcodes = new BarcodePool(barcodes).barcodes();
 		BarcodeSelector b = new BarcodeSelector(barcodes);
 
 		System.out.println("We have " + barcodes.length + " barcodes");
@@ -139,7 +142,7 @@ public class BarcodeSelectionTask extends Task<BarcodeSetCollection> {
 					updateProgress(percentage, 100);
 					updateMessage("Barcode selection: " + message);
 					return !isCancelled();
-				});
+				}, null);
 		updateMessage("Barcode selection completed!");
 		this.succeeded();
 		// selectOptimalBarcodeTimer.end();
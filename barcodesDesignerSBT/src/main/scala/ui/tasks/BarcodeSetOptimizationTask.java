@@ -74,7 +74,7 @@ public class BarcodeSetOptimizationTask extends Task<BarcodeSetCollection> {
 					updateProgress(percentage, 100);
 					updateMessage("Barcode set optimization: " + message);
 					return !isCancelled();
-				});
+				}, null);
 		updateMessage("Barcode set optimization completed!");
 		this.succeeded();
 		// selectOptimalBarcodeTimer.end();